@@ -0,0 +1,96 @@
+package kanin.fileportal;
+
+import kanin.fileportal.metrics.Metrics;
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+import kanin.fileportal.protocol.Offer;
+import kanin.fileportal.transfer.TransferEngine;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * CdsTraining is the headless "training run" used by the Maven build to produce an
+ * AppCDS archive (target/SwiftShare.jsa) for the shaded jar.
+ *
+ * It loads, without initializing, the classes SwiftShare needs at startup (the app itself,
+ * JavaFX, SQLite JDBC) and pushes one small file through a loopback transfer session, so that the
+ * JVM started with -XX:ArchiveClassesAtExit can dump them all. No display is required.
+ */
+public class CdsTraining {
+
+    // Jar packages worth archiving; everything else stays on the normal class-loading path
+    private static final String[] PREFIXES = {
+            "kanin/", "javafx/", "com/sun/javafx/", "com/sun/glass/", "com/sun/prism/",
+            "com/sun/scenario/", "org/sqlite/", "org/slf4j/"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int loaded = 0;
+        File jar = new File(CdsTraining.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        ClassLoader loader = CdsTraining.class.getClassLoader();
+
+        // 📦 Load every startup-relevant class from the jar (static initializers do not run)
+        if (jar.isFile()) {
+            try (JarFile file = new JarFile(jar)) {
+                Enumeration<JarEntry> entries = file.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (!name.endsWith(".class") || name.contains("-") || !wanted(name)) continue;
+                    try {
+                        Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+                        loaded++;
+                    } catch (Throwable ignored) {
+                        // Optional dependencies (e.g. Swing interop) may be missing; skip them
+                    }
+                }
+            }
+        }
+
+        // 🔁 Exercise the transfer path once so its lambdas and JCE classes are archived too
+        File source = Files.createTempFile("swiftshare-cds", ".bin").toFile();
+        File inbox = Files.createTempDirectory("swiftshare-cds").toFile();
+        try (ServerSocket server = TransferEngine.listen(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1)) {
+            Files.write(source.toPath(), new byte[200 * 1024]);
+            Thread receiver = new Thread(() -> {
+                try (Socket socket = server.accept()) {
+                    FrameReader frames = FrameReader.of(socket);
+                    FrameWriter out = FrameWriter.of(socket);
+                    Capabilities caps = TransferEngine.handshake(frames, out);
+                    Offer offer = TransferEngine.readOffer(frames);
+                    TransferEngine.receiveFile(frames, out, caps, inbox, offer, (done, hole) -> {}).delete();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, "CdsTraining-receiver");
+            receiver.start();
+            try (Socket socket = TransferEngine.connect(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()))) {
+                TransferEngine.sendFile(FrameReader.of(socket),
+                        FrameWriter.of(socket),
+                        source, (done, hole) -> {});
+            }
+            receiver.join();
+            Metrics.toPrometheusText();
+        } finally {
+            source.delete();
+            inbox.delete();
+        }
+
+        System.out.println("✅ CDS training run loaded " + loaded + " classes");
+    }
+
+    private static boolean wanted(String name) {
+        for (String prefix : PREFIXES)
+            if (name.startsWith(prefix)) return true;
+        return false;
+    }
+}
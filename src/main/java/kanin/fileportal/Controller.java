@@ -7,6 +7,8 @@ import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 
+import kanin.fileportal.sync.SyncOptions;
+
 import java.io.File;
 import java.net.URL;
 import java.util.Optional;
@@ -22,11 +24,11 @@ public class Controller implements Initializable {
 
     // ---------- UI Components (from FXML) ----------
     @FXML
-    private TextField ipInput, portInput, uploadPath, downloadPath;
+    private TextField ipInput, portInput, uploadPath, downloadPath, receiversInput;
     @FXML
     private VBox transferContainer;
     @FXML
-    private CheckBox hosting;
+    private CheckBox hosting, mirrorDeletes, checksums, allowSyncDeletes;
 
     // Accordion to show active transfer progress
     public static final Accordion transferList = new Accordion();
@@ -51,6 +53,17 @@ public class Controller implements Initializable {
         }
     }
 
+    /** Opens a directory chooser to select a folder to sync to the peer */
+    @FXML
+    public void setFolderToSync() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Choose a Folder to Sync");
+        File folder = chooser.showDialog(rootWindow);
+        if (folder != null) {
+            uploadPath.setText(folder.getAbsolutePath());
+        }
+    }
+
     /** Opens a directory chooser to set the save location for received files */
     @FXML
     public void setSaveLocation() {
@@ -91,33 +104,56 @@ public class Controller implements Initializable {
             }
         } catch (Exception ignored) {}
 
+        // Number of receivers for a hosted send (more than one enables fan-out)
+        int receivers = 1;
+        try {
+            receivers = Math.min(Math.max(1, Integer.parseInt(receiversInput.getText().trim())),
+                    FanOutTransfer.MAX_RECEIVERS);
+        } catch (Exception ignored) {}
+
         // Validate file and directory paths
         File file = new File(uploadPath.getText().trim());
-        boolean valid = !file.isDirectory();
+        boolean sync = file.isDirectory(); // Sending a folder means syncing it
+        boolean valid = !(sync && hosting.isSelected() && receivers > 1);
         String[] fileErrorMsgs = {"Error: Desired File Unavailable.", "Please enter a valid and accessible file path"};
-        String confirmMsg = String.format("Confirm outbound file transfer of '%s' on %s:%d",
-                file.getName(), hosting.isSelected() ? "localhost" : ip, port);
+        if (sync)
+            fileErrorMsgs = new String[]{"Error: Folder Sync Unavailable.", "Folders can only be synced to a single receiver"};
+        String confirmMsg = String.format("Confirm outbound %s of '%s' on %s:%d",
+                sync ? "folder sync" : "file transfer", file.getName(), hosting.isSelected() ? "localhost" : ip, port);
+        if (hosting.isSelected() && receivers > 1)
+            confirmMsg += String.format(" to %d receivers", receivers);
 
         // Adjust conditions for download
         if (download) {
             file = new File(downloadPath.getText().trim());
+            sync = false;
             valid = file.isDirectory();
             fileErrorMsgs = new String[]{"Error: Invalid Save Location.", "Please enter a valid working directory"};
             confirmMsg = String.format("Confirm inbound file transfer to '%s' on %s:%d", file.getName(), ip, port);
+            if (allowSyncDeletes.isSelected())
+                confirmMsg += "\nAn incoming folder sync may delete and replace files in its subfolder";
         }
 
         // Execute transfer based on user input and mode (host/client)
         if (file.exists() && valid) {
             if (alertMsg(confirmMsg, "Please press OK to confirm.", Alert.AlertType.CONFIRMATION)) {
-                if (hosting.isSelected()) {
-                    new FileTransferThread(file, port).start();
+                FileTransferThread thread = null;
+                if (hosting.isSelected() && !download && receivers > 1) {
+                    new FanOutTransfer(file, port, receivers).start();
+                } else if (hosting.isSelected()) {
+                    thread = new FileTransferThread(file, port);
                 } else if (!ip.trim().isEmpty()) {
-                    new FileTransferThread(file, port, ip).start();
+                    thread = new FileTransferThread(file, port, ip);
                 } else {
                     alertMsg("Error: Failed to establish connection",
                             "Please enter a valid IP Address or check your settings.",
                             Alert.AlertType.ERROR);
                 }
+                if (thread != null) {
+                    if (sync) thread.setSyncOptions(new SyncOptions(mirrorDeletes.isSelected(), checksums.isSelected()));
+                    if (download) thread.setAllowSyncDeletes(allowSyncDeletes.isSelected());
+                    thread.start();
+                }
             }
         } else {
             alertMsg(fileErrorMsgs[0], fileErrorMsgs[1], Alert.AlertType.ERROR);
@@ -1,5 +1,7 @@
 package kanin.fileportal;
 
+import kanin.fileportal.metrics.Metrics;
+
 import java.sql.*;
 
 /**
@@ -10,11 +12,17 @@ public class DatabaseManager {
 
     // ---------- Database Configuration ----------
     private static final String DB_URL = "jdbc:sqlite:swiftshare.db"; // SQLite database file
+    private static boolean initialized = false; // Set once the table is known to exist
 
     // ---------- Database Initialization ----------
 
-    /** Creates the database and transfer_history table if not already present */
-    public static void initializeDatabase() {
+    /**
+     * Creates the database and transfer_history table if not already present.
+     * Startup runs this in the background; every other method calls it first, so whoever
+     * touches the database before that finishes simply waits for it (and later calls are free).
+     */
+    public static synchronized void initializeDatabase() {
+        if (initialized) return;
         try (Connection conn = DriverManager.getConnection(DB_URL);
              Statement stmt = conn.createStatement()) {
 
@@ -31,6 +39,7 @@ public class DatabaseManager {
                 )
             """);
 
+            initialized = true;
             System.out.println("✅ Database initialized successfully (swiftshare.db)");
 
         } catch (SQLException e) {
@@ -47,6 +56,8 @@ public class DatabaseManager {
             VALUES (?, ?, ?, ?, ?)
         """;
 
+        initializeDatabase();
+        long start = System.nanoTime();
         try (Connection conn = DriverManager.getConnection(DB_URL);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
@@ -57,6 +68,7 @@ public class DatabaseManager {
             pstmt.setLong(4, size);
             pstmt.setString(5, status);
             pstmt.executeUpdate();
+            Metrics.DB_INSERT_TIME.observeSince(start);
 
             System.out.println("📦 Logged transfer: " + fileName + " (" + status + ")");
 
@@ -69,6 +81,7 @@ public class DatabaseManager {
 
     /** Retrieves all previous transfer records from the database, ordered by date (latest first) */
     public static ResultSet fetchTransfers() throws SQLException {
+        initializeDatabase();
         Connection conn = DriverManager.getConnection(DB_URL);
         Statement stmt = conn.createStatement();
         return stmt.executeQuery("SELECT * FROM transfer_history ORDER BY transfer_date DESC");
@@ -0,0 +1,249 @@
+package kanin.fileportal;
+
+import javafx.application.Platform;
+import javafx.scene.control.*;
+import javafx.scene.layout.VBox;
+import kanin.fileportal.metrics.Metrics;
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+import kanin.fileportal.protocol.Offer;
+import kanin.fileportal.transfer.ChunkCodec;
+import kanin.fileportal.transfer.ChunkWindow;
+import kanin.fileportal.transfer.TransferEngine;
+
+import javax.crypto.Cipher;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static kanin.fileportal.Controller.alertMsg;
+
+/**
+ * FanOutTransfer hosts a single file for several receivers at once.
+ * The file is read and encrypted only once through a shared {@link ChunkWindow};
+ * every accepted connection streams from that window at its own pace.
+ * Receivers use the normal receive flow, since the frames are the same ones a
+ * single {@link FileTransferThread} would send; a receiver that negotiates different
+ * chunk capabilities or resumes a partial file is still served correctly.
+ */
+public class FanOutTransfer extends Thread {
+
+    // ---------- Limits ----------
+    public static final int MAX_RECEIVERS = 16;          // One progress row each, so keep the card readable
+    public static final int ACCEPT_TIMEOUT_MS = 120_000; // How long to wait for all receivers to connect
+
+    // ---------- Connection and File Variables ----------
+    private ServerSocket host;
+    private final File transferFile;
+    private final int port;
+    private final int receivers;
+    private final List<Socket> clients = new CopyOnWriteArrayList<>();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile int connected;
+
+    // ---------- UI Components for Aggregated Progress ----------
+    private final ProgressBar overallBar = new ProgressBar(0);
+    private final ProgressBar[] receiverBars;
+    private final Label[] receiverLabels;
+    private final VBox container = new VBox();
+    private final TitledPane infoCard = new TitledPane();
+    private final Label status = new Label("Status: Created");
+
+    // ---------- Constructor ----------
+    public FanOutTransfer(File file, int port, int receivers) {
+        this.transferFile = file;
+        this.port = port;
+        this.receivers = Math.min(Math.max(1, receivers), MAX_RECEIVERS);
+        this.receiverBars = new ProgressBar[this.receivers];
+        this.receiverLabels = new Label[this.receivers];
+
+        // Create UI Card with one overall bar and a row per receiver
+        this.infoCard.getStyleClass().add("transferThread");
+        overallBar.prefWidthProperty().bind(container.widthProperty());
+        container.getChildren().addAll(
+                this.status,
+                new Label(String.format("Path: '%s'", file.getAbsolutePath())),
+                this.overallBar
+        );
+        for (int i = 0; i < this.receivers; i++) {
+            receiverLabels[i] = new Label(String.format("Receiver #%d: waiting...", i + 1));
+            receiverBars[i] = new ProgressBar(0);
+            receiverBars[i].prefWidthProperty().bind(container.widthProperty());
+            container.getChildren().addAll(receiverLabels[i], receiverBars[i]);
+        }
+
+        // Context menu for cancelling the whole fan-out
+        ContextMenu menu = new ContextMenu();
+        MenuItem cancel = new MenuItem("Cancel");
+        cancel.setOnAction(e -> {
+            Controller.transferList.getPanes().remove(this.infoCard);
+            if (this.isAlive()) this.interrupt();
+            disconnect();
+        });
+        menu.getItems().add(cancel);
+        this.infoCard.setContextMenu(menu);
+        this.infoCard.setContent(container);
+    }
+
+    // ---------- Main Thread Logic ----------
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        try (ChunkWindow window = new ChunkWindow(transferFile, ChunkWindow.DEFAULT_CAPACITY)) {
+            this.host = TransferEngine.listen(new InetSocketAddress(this.port), 0);
+            Platform.runLater(() -> {
+                this.infoCard.setText(String.format("Fan-out Host @localhost:%d (%d receivers)", this.port, this.receivers));
+                statusUpdate("Waiting for receivers...");
+                Controller.transferList.getPanes().add(this.infoCard);
+            });
+
+            // 🔌 Accept receivers until all are connected or the accept window closes;
+            // early receivers start streaming right away instead of waiting for the rest
+            List<Thread> senders = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + ACCEPT_TIMEOUT_MS;
+            while (connected < receivers) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) break;
+                this.host.setSoTimeout((int) remaining);
+                Socket client;
+                try {
+                    client = this.host.accept();
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                clients.add(client);
+                final int slot = connected++;
+                Thread sender = new Thread(() -> serve(slot, client, window), "FanOut-" + transferFile.getName() + "-" + slot);
+                sender.start();
+                senders.add(sender);
+                statusUpdate(String.format("Connected %d/%d receivers", connected, receivers));
+            }
+            if (connected == 0)
+                throw new IOException("No receivers connected within " + ACCEPT_TIMEOUT_MS / 1000 + " seconds");
+            for (int slot = connected; slot < receivers; slot++)
+                receiverUpdate(slot, String.format("Receiver #%d: did not connect", slot + 1), 0);
+            if (connected < receivers)
+                DatabaseManager.insertTransfer(transferFile.getName(), "Host", "Fan-out", transferFile.length(),
+                        String.format("Failed: %d receiver(s) did not connect", receivers - connected));
+            for (Thread sender : senders) sender.join();
+
+            // ✅ Notify User with a per-receiver summary
+            String missing = (connected < receivers)
+                    ? String.format("\n%d receiver(s) did not connect in time", receivers - connected) : "";
+            Platform.runLater(() -> {
+                Controller.transferList.getPanes().remove(this.infoCard);
+                alertMsg(String.format("%s sent to %d/%d receivers.", transferFile.getName(), completed.get(), receivers),
+                        "Elapsed time: " + (System.currentTimeMillis() - start) / 1000 + " seconds" + missing,
+                        failed.get() == 0 && connected == receivers ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING);
+            });
+
+        } catch (Exception e) {
+            e.printStackTrace();
+
+            // ❌ Log fan-out failure
+            DatabaseManager.insertTransfer(transferFile.getName(), "Host", "Fan-out", transferFile.length(),
+                    "Failed: " + e.getMessage());
+
+            // Display error alert in UI
+            Platform.runLater(() -> alertMsg(
+                    "Error: " + e.getMessage(),
+                    "Fan-out transfer failed.",
+                    Alert.AlertType.ERROR
+            ));
+        } finally {
+            // Disconnect sockets and cleanup UI
+            disconnect();
+            Platform.runLater(() -> Controller.transferList.getPanes().remove(this.infoCard));
+        }
+    }
+
+    // ---------- Per-Receiver Streaming ----------
+    private void serve(int slot, Socket client, ChunkWindow window) {
+        String receiver = client.getInetAddress().getHostAddress();
+        Metrics.ACTIVE_TRANSFERS.inc();
+        try {
+            FrameReader frames = FrameReader.of(client);
+            FrameWriter out = FrameWriter.of(client);
+            Capabilities caps = TransferEngine.handshake(frames, out);
+            long offset = TransferEngine.offer(frames, out, caps, Offer.file(transferFile));
+            double size = Math.max(1, window.length());
+
+            if (!window.servesFrames(caps)) {
+                // 🐢 Peer negotiated a smaller chunk size or no zero runs: the window's frames do not fit it
+                receiverUpdate(slot, String.format("Receiver #%d (%s): streaming from disk", slot + 1, receiver), 0);
+                ChunkCodec.send(transferFile, out, caps, offset, (done, hole) ->
+                        receiverUpdate(slot, String.format("Receiver #%d (%s): streaming from disk", slot + 1, receiver),
+                                done / size));
+            } else {
+                Cipher fallbackCipher = caps.newCipher(Cipher.ENCRYPT_MODE);
+                long fromDisk = 0;
+                for (int i = (int) (offset / ChunkCodec.CHUNK_SIZE); i < window.chunkCount(); i++) {
+                    long start = System.nanoTime();
+                    if (window.isEvicted(i)) fromDisk++;
+                    byte[] record = window.chunk(i, fallbackCipher);
+                    out.write(record);
+                    ChunkCodec.recordSent(record, (int) (window.bytesThrough(i) - (long) i * ChunkCodec.CHUNK_SIZE), start);
+                    receiverUpdate(slot, String.format("Receiver #%d (%s): %s", slot + 1, receiver,
+                            fromDisk > 0 ? "catching up from disk" : "streaming"), window.bytesThrough(i) / size);
+                }
+                ChunkCodec.writeEnd(out);
+            }
+            TransferEngine.awaitAck(frames);
+
+            completed.incrementAndGet();
+            Metrics.TRANSFERS_SUCCEEDED.inc();
+            receiverUpdate(slot, String.format("Receiver #%d (%s): done", slot + 1, receiver), 1);
+            DatabaseManager.insertTransfer(transferFile.getName(), "Host", receiver, transferFile.length(), "Success");
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            failed.incrementAndGet();
+            Metrics.TRANSFERS_FAILED.inc();
+            receiverUpdate(slot, String.format("Receiver #%d (%s): failed", slot + 1, receiver), 0);
+            DatabaseManager.insertTransfer(transferFile.getName(), "Host", receiver, transferFile.length(),
+                    "Failed: " + e.getMessage());
+        } finally {
+            Metrics.ACTIVE_TRANSFERS.dec();
+            try {
+                client.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    // ---------- UI Helpers for Status and Progress ----------
+    private void statusUpdate(String s) {
+        Platform.runLater(() -> this.status.setText("Status: " + s));
+    }
+
+    private void receiverUpdate(int slot, String text, double progress) {
+        Platform.runLater(() -> {
+            receiverLabels[slot].setText(text);
+            receiverBars[slot].setProgress(progress);
+
+            // Overall progress is the mean of the connected receivers, so one straggler stays visible
+            double sum = 0;
+            for (int i = 0; i < connected; i++) sum += Math.max(0, receiverBars[i].getProgress());
+            overallBar.setProgress(sum / Math.max(1, connected));
+            this.status.setText(String.format("Status: %d/%d receivers complete", completed.get(), receivers));
+        });
+    }
+
+    // ---------- Disconnect and Cleanup ----------
+    private void disconnect() {
+        try {
+            for (Socket client : clients) client.close();
+            if (this.host != null)
+                this.host.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -3,9 +3,18 @@ package kanin.fileportal;
 import javafx.application.Platform;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
-import kanin.fileportal.security.EncryptionUtil;
+import kanin.fileportal.metrics.Metrics;
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+import kanin.fileportal.protocol.Offer;
+import kanin.fileportal.sync.SyncOptions;
+import kanin.fileportal.sync.TreeSync;
+import kanin.fileportal.transfer.ChunkCodec;
+import kanin.fileportal.transfer.TransferEngine;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 
@@ -22,9 +31,15 @@ public class FileTransferThread extends Thread {
     private ServerSocket host;
     private final File transferFile;
     private final int port;
-    private boolean pauseFlag = false;
+    private boolean pauseFlag = false; // Guarded by pauseLock
+    private final Object pauseLock = new Object(); // Not "this": a Thread's own monitor is used by join()
+    private long elided = 0; // Bytes that crossed the wire as zero-run holes
+    private boolean active = false; // Counted in Metrics.ACTIVE_TRANSFERS
     private String ip;
     private File inboundFile;
+    private SyncOptions syncOptions;       // Set when sending a whole directory as a tree sync
+    private boolean allowSyncDeletes;      // Receiver's consent to an incoming sync deleting or replacing files
+    private TreeSync.Summary syncSummary;  // Filled in by either side of a completed sync
 
     // ---------- UI Components for Transfer Progress ----------
     private final ProgressBar bar = new ProgressBar(0);
@@ -53,11 +68,11 @@ public class FileTransferThread extends Thread {
         pause.setOnAction(e -> {
             if (this.client != null)
                 if (pause.getText().equalsIgnoreCase("Pause")) {
-                    this.pauseFlag = true;
+                    setPaused(true);
                     pause.setText("Resume");
                     statusUpdate("[PAUSED]");
                 } else {
-                    this.pauseFlag = false;
+                    setPaused(false);
                     pause.setText("Pause");
                     statusUpdate("[RESUMED]");
                 }
@@ -78,13 +93,25 @@ public class FileTransferThread extends Thread {
         this.ip = ip;
     }
 
+    // ---------- Tree Sync Mode (Sender) ----------
+
+    /** Turns a host/client send of a directory into a tree sync with the given options */
+    public void setSyncOptions(SyncOptions options) {
+        this.syncOptions = options;
+    }
+
+    /** Lets an incoming tree sync delete files, and replace files with folders (or back) */
+    public void setAllowSyncDeletes(boolean allow) {
+        this.allowSyncDeletes = allow;
+    }
+
     // ---------- Main Thread Logic ----------
     @Override
     public void run() {
         try {
             // 🔌 Establish Connection between Host and Client
             if (this.ip == null) { // Host Mode
-                this.host = new ServerSocket(this.port);
+                this.host = TransferEngine.listen(new InetSocketAddress(this.port), 0);
                 Platform.runLater(() -> {
                     this.infoCard.setText("Host Connection @localhost:" + this.port);
                     statusUpdate("Waiting...");
@@ -92,7 +119,7 @@ public class FileTransferThread extends Thread {
                 });
                 this.client = this.host.accept(); // Wait for client connection
             } else { // Client Mode
-                this.client = new Socket(this.ip, this.port);
+                this.client = TransferEngine.connect(new InetSocketAddress(this.ip, this.port));
                 Platform.runLater(() -> {
                     this.infoCard.setText(String.format("Remote Connection @%s:%d", this.ip, this.port));
                     statusUpdate("Connected");
@@ -101,21 +128,27 @@ public class FileTransferThread extends Thread {
             }
 
             long start = System.currentTimeMillis();
+            Metrics.ACTIVE_TRANSFERS.inc();
+            active = true;
 
             // 🚀 Execute File Transfer (Send or Receive)
-            if (this.transferFile.isDirectory())
+            if (this.syncOptions != null)
+                outgoingSync();
+            else if (this.transferFile.isDirectory())
                 incomingTransfer();
             else
                 outgoingTransfer();
 
             // ✅ Log transfer success in database
+            Metrics.TRANSFERS_SUCCEEDED.inc();
             String sender = (ip == null) ? "Host" : "Client";
             String receiver = (ip == null) ? "Receiver" : "Host";
             DatabaseManager.insertTransfer(
                     (inboundFile != null ? inboundFile.getName() : transferFile.getName()),
                     sender,
                     receiver,
-                    (inboundFile != null ? inboundFile.length() : transferFile.length()),
+                    (syncSummary != null ? syncSummary.bytes
+                            : inboundFile != null ? inboundFile.length() : transferFile.length()),
                     "Success"
             );
 
@@ -123,6 +156,10 @@ public class FileTransferThread extends Thread {
             Platform.runLater(() -> {
                 String fileName = (inboundFile != null) ? inboundFile.getName() : transferFile.getName();
                 String subtext = "Elapsed time: " + (System.currentTimeMillis() - start) / 1000 + " seconds";
+                if (elided > 0)
+                    subtext += String.format("\nSkipped %.1f MB of zero blocks", elided / (1024.0 * 1024));
+                if (syncSummary != null)
+                    subtext += "\nSynced: " + syncSummary;
                 if (inboundFile != null)
                     subtext += String.format("\nSaved to '%s'", inboundFile.getAbsolutePath());
                 Controller.transferList.getPanes().remove(this.infoCard);
@@ -133,6 +170,7 @@ public class FileTransferThread extends Thread {
             e.printStackTrace();
 
             // ❌ Log transfer failure
+            Metrics.TRANSFERS_FAILED.inc();
             String fileName = (transferFile != null) ? transferFile.getName() : "Unknown";
             long fileSize = (transferFile != null) ? transferFile.length() : 0;
 
@@ -151,6 +189,7 @@ public class FileTransferThread extends Thread {
                     Alert.AlertType.ERROR
             ));
         } finally {
+            if (active) Metrics.ACTIVE_TRANSFERS.dec();
             // Disconnect sockets and cleanup UI
             disconnect();
             Platform.runLater(() -> Controller.transferList.getPanes().remove(this.infoCard));
@@ -165,17 +204,12 @@ public class FileTransferThread extends Thread {
     // ---------- Outgoing (Send) File Transfer ----------
     private void outgoingTransfer() throws IOException {
         try {
-            PrintWriter writer = new PrintWriter(client.getOutputStream(), true);
-            writer.println(transferFile.getName() + (char) 28 + transferFile.length());
-
             statusUpdate("Encrypting and sending '" + transferFile.getName() + "'...");
 
-            byte[] fileData = readFileBytes(transferFile);
-            byte[] encryptedData = EncryptionUtil.encrypt(fileData);
-
-            transfer(new ByteArrayInputStream(encryptedData),
-                    new BufferedOutputStream(client.getOutputStream()),
-                    encryptedData.length);
+            TransferEngine.sendFile(FrameReader.of(client),
+                    FrameWriter.of(client),
+                    transferFile,
+                    progressListener(transferFile.length()));
 
             statusUpdate("File sent successfully.");
 
@@ -186,49 +220,88 @@ public class FileTransferThread extends Thread {
 
     // ---------- Incoming (Receive) File Transfer ----------
     private void incomingTransfer() throws IOException {
-        String directory = transferFile.getAbsolutePath();
-        BufferedReader input = new BufferedReader(new InputStreamReader(client.getInputStream()));
-        String[] info = input.readLine().split("" + (char) 28);
-        this.inboundFile = new File(directory + "/" + info[0]);
-        while (!this.inboundFile.createNewFile()) {
-            this.inboundFile = new File(directory + "/copy_" + info[0]);
+        // One reader for every frame, so nothing read ahead gets lost
+        FrameReader frames = FrameReader.of(client);
+        FrameWriter out = FrameWriter.of(client);
+        Capabilities caps = TransferEngine.handshake(frames, out);
+        Offer offer = TransferEngine.readOffer(frames);
+        if (offer.isSync()) {
+            incomingSync(frames, out, caps, offer);
+            return;
         }
 
-        statusUpdate("Receiving and decrypting '" + inboundFile.getName() + "'...");
-
-        ByteArrayOutputStream receivedData = new ByteArrayOutputStream();
-        transfer(new BufferedInputStream(this.client.getInputStream()),
-                new BufferedOutputStream(receivedData),
-                Long.parseLong(info[1]));
+        statusUpdate("Receiving and decrypting '" + offer.name() + "'...");
 
         try {
-            byte[] decryptedData = EncryptionUtil.decrypt(receivedData.toByteArray());
-            writeFileBytes(inboundFile, decryptedData);
+            this.inboundFile = TransferEngine.receiveFile(frames, out, caps, transferFile, offer,
+                    progressListener(offer.size()));
             statusUpdate("Decryption complete.");
         } catch (Exception e) {
             throw new IOException("Incoming transfer error: " + e.getMessage(), e);
         }
     }
 
-    // ---------- Core Byte Transfer Logic ----------
-    private void transfer(InputStream in, OutputStream out, long size) throws IOException {
-        try {
-            int amt;
-            double total = 0;
-            byte[] buffer = new byte[1024 * 8];
-            while ((amt = in.read(buffer)) != -1) {
-                synchronized (this) {
-                    if (!pauseFlag) {
-                        out.write(buffer, 0, amt);
-                        out.flush();
-                        final double progress = (total += amt) / size;
-                        Platform.runLater(() -> bar.setProgress(progress));
-                    }
+    // ---------- Tree Sync (Send and Receive) ----------
+    private void outgoingSync() throws IOException {
+        FrameReader frames = FrameReader.of(client);
+        FrameWriter out = FrameWriter.of(client);
+        Capabilities caps = TransferEngine.handshake(frames, out);
+        TransferEngine.offer(frames, out, caps, Offer.sync(transferFile, syncOptions.mirrorDeletes(), syncOptions.checksums()));
+
+        statusUpdate("Comparing '" + transferFile.getName() + "' with the receiver...");
+
+        this.syncSummary = TreeSync.sendTree(transferFile, frames, out, caps, syncOptions, syncListener());
+
+        statusUpdate("Sync complete.");
+    }
+
+    private void incomingSync(FrameReader frames, FrameWriter out, Capabilities caps, Offer offer) throws IOException {
+        // The sender only asks to mirror deletions; this side decides whether it may
+        if (offer.mirrorDeletes() && !allowSyncDeletes)
+            throw new IOException("Refusing a sync of '" + offer.name()
+                    + "' that mirrors deletions; tick 'Allow sync deletions' to accept it");
+        this.inboundFile = TreeSync.receiveRoot(transferFile, offer.name());
+        statusUpdate("Syncing '" + offer.name() + "' into '" + inboundFile.getAbsolutePath() + "'...");
+
+        TransferEngine.ready(out, 0);
+        this.syncSummary = TreeSync.receiveTree(inboundFile, frames, out, caps,
+                new SyncOptions(allowSyncDeletes, offer.checksums()), syncListener());
+
+        statusUpdate("Sync complete.");
+    }
+
+    /** Shows the current file in the status line and tracks its progress on the bar */
+    private TreeSync.Listener syncListener() {
+        return (action, path, size) -> {
+            statusUpdate(action + " '" + path + "'...");
+            return progressListener(size);
+        };
+    }
+
+    // ---------- Progress and Pause Handling ----------
+
+    /** Updates the progress bar after every chunk and blocks the transfer while paused */
+    private ChunkCodec.Listener progressListener(long size) {
+        long[] last = {0}; // A resumed transfer reports its offset first, so that prefix never counts as skipped
+        return (done, hole) -> {
+            synchronized (pauseLock) {
+                try {
+                    while (pauseFlag) pauseLock.wait(); // Socket buffers fill up and the peer waits with us
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Transfer cancelled");
                 }
             }
-        } finally {
-            in.close();
-            out.close();
+            if (hole) elided += done - last[0];
+            last[0] = done;
+            final double progress = size == 0 ? 1 : (double) done / size;
+            Platform.runLater(() -> bar.setProgress(progress));
+        };
+    }
+
+    private void setPaused(boolean paused) {
+        synchronized (pauseLock) {
+            this.pauseFlag = paused;
+            pauseLock.notifyAll();
         }
     }
 
@@ -243,17 +316,4 @@ public class FileTransferThread extends Thread {
             e.printStackTrace();
         }
     }
-
-    // ---------- Utility: Read and Write File Bytes ----------
-    private static byte[] readFileBytes(File file) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file)) {
-            return fis.readAllBytes();
-        }
-    }
-
-    private static void writeFileBytes(File file, byte[] data) throws IOException {
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            fos.write(data);
-        }
-    }
 }
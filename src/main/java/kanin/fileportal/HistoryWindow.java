@@ -14,6 +14,9 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 💾 SwiftShare Transfer History Window
@@ -25,6 +28,7 @@ public class HistoryWindow {
 
     private static final String DB_URL = "jdbc:sqlite:swiftshare.db"; // Database file location
     private static Timeline autoRefreshTimeline; // Timer for periodic updates
+    private static final AtomicBoolean loading = new AtomicBoolean(); // One background load at a time
 
     // ---------- Main Window Setup ----------
     public static void show() {
@@ -34,6 +38,7 @@ public class HistoryWindow {
         // 🧾 Create and style the table that displays transfer logs
         TableView<TransferRecord> table = new TableView<>();
         table.getStyleClass().add("history-table");
+        table.setPlaceholder(new Label("Loading history...")); // Until the first background load lands
 
         // Table columns for file details and status
         TableColumn<TransferRecord, String> fileCol = new TableColumn<>("File Name");
@@ -74,7 +79,7 @@ public class HistoryWindow {
         refreshLabel.setStyle("-fx-text-fill: #bbbbbb; -fx-font-size: 12px;");
 
         Button manualRefresh = new Button("↻ Refresh Now");
-        manualRefresh.setOnAction(e -> new Thread(() -> loadData(table)).start());
+        manualRefresh.setOnAction(e -> refresh(table));
         manualRefresh.setStyle(
                 "-fx-background-color: linear-gradient(to right, #0078ff, #00c6ff);" +
                 "-fx-text-fill: white; -fx-font-weight: bold;" +
@@ -117,25 +122,49 @@ public class HistoryWindow {
     }
 
     // ---------- Load Data from Database ----------
+
+    /**
+     * Loads the history on a background thread; the FX thread never touches the database, so
+     * opening the window while startup is still loading SQLite cannot freeze the UI.
+     * A refresh that arrives while a load is still running is skipped.
+     */
+    private static void refresh(TableView<TransferRecord> table) {
+        if (!loading.compareAndSet(false, true)) return;
+        Thread loader = new Thread(() -> {
+            try {
+                loadData(table);
+            } finally {
+                loading.set(false);
+            }
+        }, "SwiftShare-history");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
     private static void loadData(TableView<TransferRecord> table) {
+        DatabaseManager.initializeDatabase(); // Waits if startup initialization is still running
         try (Connection conn = DriverManager.getConnection(DB_URL);
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT * FROM transfer_history ORDER BY transfer_date DESC")) {
 
-            Platform.runLater(() -> table.getItems().clear());
-
+            List<TransferRecord> records = new ArrayList<>();
             while (rs.next()) {
-                TransferRecord record = new TransferRecord(
+                records.add(new TransferRecord(
                         rs.getString("file_name"),
                         rs.getString("sender"),
                         rs.getString("receiver"),
                         String.valueOf(rs.getLong("size_bytes")),
                         rs.getString("transfer_date"),
                         rs.getString("status")
-                );
-                Platform.runLater(() -> table.getItems().add(record));
+                ));
             }
 
+            // Swap the rows in one go on the FX thread
+            Platform.runLater(() -> {
+                table.getItems().setAll(records);
+                table.setPlaceholder(new Label("No transfers yet"));
+            });
+
         } catch (Exception e) {
             e.printStackTrace();
             Platform.runLater(() -> {
@@ -155,7 +184,7 @@ public class HistoryWindow {
         }
 
         autoRefreshTimeline = new Timeline(
-                new KeyFrame(Duration.seconds(0), event -> new Thread(() -> loadData(table)).start()),
+                new KeyFrame(Duration.seconds(0), event -> refresh(table)),
                 new KeyFrame(Duration.seconds(5)) // Refresh every 5 seconds
         );
         autoRefreshTimeline.setCycleCount(Timeline.INDEFINITE);
@@ -4,27 +4,49 @@ import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import kanin.fileportal.metrics.MetricsServer;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 
 /**
  * Main class serves as the primary entry point for the SwiftShare JavaFX application.
- * It initializes the SQLite database and loads the main user interface defined in FXML.
+ * It loads the main user interface defined in FXML and, in parallel, initializes the
+ * SQLite database and metrics endpoint on a background thread the window never waits for.
  */
 public class Main extends Application {
 
     // Global reference to the main application window (used by controllers for dialogs and alerts)
     public static Stage rootWindow;
 
+    // Background thread for heavy startup work (SQLite native library + DDL, metrics endpoint)
+    private static Thread backgroundInit;
+
+    // ---------- Background Initialization ----------
+    @Override
+    public void init() {
+        // Runs on the launcher thread before start(), so this work overlaps with building the UI
+        backgroundInit = new Thread(() -> {
+            // ✅ Initialize the database (creates new DB if not already present)
+            DatabaseManager.initializeDatabase();
+
+            // 📈 Expose transfer metrics over HTTP (Prometheus) and JMX
+            MetricsServer.start();
+        }, "SwiftShare-init");
+        backgroundInit.setDaemon(true);
+        backgroundInit.start();
+
+        // Closing the window calls System.exit, which skips Application.stop(); a shutdown hook runs either way
+        Runtime.getRuntime().addShutdownHook(new Thread(MetricsServer::stop, "SwiftShare-shutdown"));
+    }
+
+    // ---------- UI Startup ----------
     @Override
     public void start(Stage rootWindow) {
         try {
             // Store reference to the primary stage for global access
             Main.rootWindow = rootWindow;
 
-            // ✅ Initialize the database (creates new DB if not already present)
-            DatabaseManager.initializeDatabase();
-
             // Load the main UI layout from the FXML file
             FXMLLoader loader = new FXMLLoader(Main.class.getClassLoader().getResource("main.fxml"));
             Scene scene = new Scene(loader.load());
@@ -36,9 +58,10 @@ public class Main extends Application {
             rootWindow.setMinHeight(372);
             rootWindow.setOnCloseRequest(e -> System.exit(0));
             rootWindow.show();
+            reportStartup();
 
             // Confirmation message in the console
-            System.out.println("✅ SwiftShare started successfully. Database ready.");
+            System.out.println("✅ SwiftShare started successfully.");
 
         } catch (IOException e) {
             // Handle UI loading issues (e.g., missing FXML or resource errors)
@@ -51,6 +74,28 @@ public class Main extends Application {
         }
     }
 
+    // ---------- Startup Measurement ----------
+
+    /**
+     * -Dswiftshare.startupTiming=true prints the time from JVM start to the first window.
+     * -Dswiftshare.exitAfterFirstWindow=true then exits once background initialization is done,
+     * which makes startup scriptable (benchmarks, or a CDS training run with a display).
+     */
+    private static void reportStartup() {
+        if (Boolean.getBoolean("swiftshare.startupTiming")) {
+            long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+            System.out.println("⏱️ Time to first window: " + (System.currentTimeMillis() - jvmStart) + " ms");
+        }
+        if (Boolean.getBoolean("swiftshare.exitAfterFirstWindow")) {
+            new Thread(() -> {
+                try {
+                    backgroundInit.join();
+                } catch (InterruptedException ignored) {}
+                System.exit(0);
+            }, "SwiftShare-exit").start();
+        }
+    }
+
     // Application entry point — launches the JavaFX runtime
     public static void main(String[] args) {
         launch(args);
@@ -0,0 +1,287 @@
+package kanin.fileportal.loadtest;
+
+import kanin.fileportal.metrics.Metrics;
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+import kanin.fileportal.protocol.Offer;
+import kanin.fileportal.transfer.TransferEngine;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * LoadTest answers "how many concurrent transfers can one host sustain?".
+ *
+ * It starts a loopback receiver and a pool of senders that keep pushing files through the
+ * real {@link TransferEngine} (handshake, chunk frames, AES, zero elision, disk writes) for a
+ * fixed duration, then reports aggregate throughput, p50/p99 completion latency, the peak
+ * of used heap (sampled every {@value #HEAP_SAMPLE_MS} ms) and the peak thread count.
+ *
+ * Usage:
+ * <pre>
+ *   java -cp SwiftShare.jar kanin.fileportal.loadtest.LoadTest \
+ *        --concurrency 16 --duration 60 --sizes 64K=60,4M=30,64M=10 --zeros 0.2 --out loadtest
+ * </pre>
+ * Results go to {@code <out>-summary.properties} and one row per transfer to {@code <out>-transfers.csv}.
+ */
+public class LoadTest {
+
+    // ---------- Configuration (defaults) ----------
+    private int concurrency = 8;
+    private int durationSeconds = 30;
+    private String sizes = "64K=60,1M=30,16M=10"; // size=weight pairs
+    private double zeroFraction = 0;               // Share of each file left as zero blocks
+    private String out = "loadtest";
+
+    private static final int HEAP_SAMPLE_MS = 50;
+
+    // ---------- Results ----------
+    private final List<long[]> completions = Collections.synchronizedList(new ArrayList<>()); // {size, nanos}
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        LoadTest test = new LoadTest();
+        test.parse(args);
+        test.run();
+    }
+
+    // ---------- Argument Parsing ----------
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for option " + args[i]);
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--concurrency" -> concurrency = Integer.parseInt(value);
+                case "--duration" -> durationSeconds = Integer.parseInt(value);
+                case "--sizes" -> sizes = value;
+                case "--zeros" -> zeroFraction = Double.parseDouble(value);
+                case "--out" -> out = value;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    /** Parses sizes like 512, 64K, 4M or 1G */
+    private static long parseSize(String s) {
+        s = s.trim().toUpperCase();
+        long unit = switch (s.charAt(s.length() - 1)) {
+            case 'K' -> 1024L;
+            case 'M' -> 1024L * 1024;
+            case 'G' -> 1024L * 1024 * 1024;
+            default -> 1;
+        };
+        return Long.parseLong(unit == 1 ? s : s.substring(0, s.length() - 1)) * unit;
+    }
+
+    // ---------- Test Run ----------
+    private void run() throws Exception {
+        Path work = Files.createTempDirectory("swiftshare-loadtest");
+        File inbox = Files.createDirectory(work.resolve("inbox")).toFile();
+
+        // 📂 One source file per size class, generated up front so disk reads are real but not the bottleneck
+        List<File> sources = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String pair : sizes.split(",")) {
+            String[] parts = pair.split("=");
+            long size = parseSize(parts[0]);
+            sources.add(generate(work.resolve("source-" + parts[0].trim()).toFile(), size));
+            weights.add(parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1);
+        }
+        int totalWeight = weights.stream().mapToInt(Integer::intValue).sum();
+
+        // 📊 Reset the thread high-water mark and sample used heap throughout the run.
+        // (Per-pool peaks are not summed: each pool peaks at a different moment and eden's
+        // peak is just its capacity, so the total would mostly describe young-gen sizing.)
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        LongAccumulator heapPeak = new LongAccumulator(Math::max, 0);
+        System.gc();
+        threads.resetPeakThreadCount();
+        ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LoadTest-heap");
+            t.setDaemon(true);
+            return t;
+        });
+        heapSampler.scheduleAtFixedRate(() -> heapPeak.accumulate(memory.getHeapMemoryUsage().getUsed()),
+                0, HEAP_SAMPLE_MS, TimeUnit.MILLISECONDS);
+
+        try {
+            ServerSocket server = TransferEngine.listen(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+            ExecutorService receivers = Executors.newCachedThreadPool();
+            long elapsed;
+            try {
+                Thread acceptor = new Thread(() -> {
+                    try {
+                        while (true) {
+                            Socket socket = server.accept();
+                            receivers.execute(() -> receive(socket, inbox));
+                        }
+                    } catch (IOException ignored) {
+                        // Server closed: run is over
+                    }
+                }, "LoadTest-acceptor");
+                acceptor.start();
+
+                System.out.printf("🚀 %d concurrent senders for %d s, sizes %s%n", concurrency, durationSeconds, sizes);
+                long start = System.nanoTime();
+                long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+                ExecutorService senders = Executors.newFixedThreadPool(concurrency);
+                for (int i = 0; i < concurrency; i++) {
+                    senders.execute(() -> {
+                        while (System.nanoTime() < deadline) {
+                            int pick = ThreadLocalRandom.current().nextInt(totalWeight), index = 0;
+                            while ((pick -= weights.get(index)) >= 0) index++;
+                            send(server.getLocalPort(), sources.get(index));
+                        }
+                    });
+                }
+                senders.shutdown();
+                senders.awaitTermination(durationSeconds + 600L, TimeUnit.SECONDS);
+                elapsed = System.nanoTime() - start;
+            } finally {
+                server.close(); // Stops the acceptor before the receivers drain and the report is taken
+            }
+            receivers.shutdown();
+            receivers.awaitTermination(60, TimeUnit.SECONDS);
+
+            heapSampler.shutdownNow();
+            report(elapsed, heapPeak.get(), threads.getPeakThreadCount());
+        } finally {
+            heapSampler.shutdownNow();
+            deleteTree(work.toFile());
+        }
+    }
+
+    // ---------- Sender and Receiver ----------
+
+    /** Sends one file and waits for the receiver's acknowledgement, i.e. until the file is on disk */
+    private void send(int port, File file) {
+        long start = System.nanoTime();
+        try (Socket socket = TransferEngine.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+            TransferEngine.sendFile(FrameReader.of(socket),
+                    FrameWriter.of(socket),
+                    file, (done, hole) -> {});
+            completions.add(new long[]{file.length(), System.nanoTime() - start});
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            System.err.println("⚠️ Transfer failed: " + e.getMessage());
+        }
+    }
+
+    private void receive(Socket socket, File inbox) {
+        Metrics.ACTIVE_TRANSFERS.inc();
+        try (socket) {
+            FrameReader frames = FrameReader.of(socket);
+            FrameWriter out = FrameWriter.of(socket);
+            Capabilities caps = TransferEngine.handshake(frames, out);
+            Offer offer = TransferEngine.readOffer(frames);
+            // Own directory per connection: concurrent copies of one source would otherwise share a partial file
+            File directory = Files.createTempDirectory(inbox.toPath(), "rx").toFile();
+            try {
+                // The ACK sent inside receiveFile is what stops the sender's clock
+                File target = TransferEngine.receiveFile(frames, out, caps, directory, offer, (done, hole) -> {});
+                Files.deleteIfExists(target.toPath()); // Keep the inbox from filling the disk
+            } finally {
+                deleteTree(directory);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Receive failed: " + e.getMessage());
+        } finally {
+            Metrics.ACTIVE_TRANSFERS.dec();
+        }
+    }
+
+    // ---------- Report ----------
+    private void report(long elapsedNanos, long heapPeak, int peakThreads) throws IOException {
+        long[] latencies;
+        long bytes = 0;
+        synchronized (completions) {
+            latencies = new long[completions.size()];
+            for (int i = 0; i < latencies.length; i++) {
+                bytes += completions.get(i)[0];
+                latencies[i] = completions.get(i)[1];
+            }
+        }
+        Arrays.sort(latencies);
+        double seconds = elapsedNanos / 1e9;
+
+        Properties summary = new Properties();
+        summary.setProperty("concurrency", String.valueOf(concurrency));
+        summary.setProperty("duration.seconds", String.format("%.2f", seconds));
+        summary.setProperty("sizes", sizes);
+        summary.setProperty("zeros", String.valueOf(zeroFraction));
+        summary.setProperty("transfers.completed", String.valueOf(latencies.length));
+        summary.setProperty("transfers.failed", String.valueOf(failures.get()));
+        summary.setProperty("throughput.mb.per.second", String.format("%.2f", bytes / seconds / (1024 * 1024)));
+        summary.setProperty("transfers.per.second", String.format("%.2f", latencies.length / seconds));
+        summary.setProperty("latency.p50.ms", String.format("%.2f", percentile(latencies, 0.50) / 1e6));
+        summary.setProperty("latency.p99.ms", String.format("%.2f", percentile(latencies, 0.99) / 1e6));
+        summary.setProperty("heap.used.peak.mb", String.format("%.1f", heapPeak / (1024.0 * 1024)));
+        summary.setProperty("threads.peak", String.valueOf(peakThreads));
+        summary.setProperty("chunk.send.latency.mean.ms", String.format("%.3f", Metrics.CHUNK_SEND_LATENCY.meanMillis()));
+        summary.setProperty("chunk.receive.latency.mean.ms",
+                String.format("%.3f", Metrics.CHUNK_RECEIVE_LATENCY.meanMillis()));
+        summary.setProperty("encrypt.mean.ms", String.format("%.3f", Metrics.ENCRYPT_TIME.meanMillis()));
+        summary.setProperty("disk.write.mean.ms", String.format("%.3f", Metrics.DISK_WRITE_TIME.meanMillis()));
+
+        File summaryFile = new File(out + "-summary.properties");
+        try (Writer writer = new FileWriter(summaryFile)) {
+            summary.store(writer, "SwiftShare loopback load test");
+        }
+        File csvFile = new File(out + "-transfers.csv");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(csvFile))) {
+            writer.println("size_bytes,latency_ms");
+            synchronized (completions) {
+                for (long[] c : completions) writer.printf("%d,%.3f%n", c[0], c[1] / 1e6);
+            }
+        }
+
+        new TreeMap<>(summary).forEach((k, v) -> System.out.println("  " + k + " = " + v));
+        System.out.println("✅ Results written to " + summaryFile.getAbsolutePath() + " and " + csvFile.getName());
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    // ---------- Test Data ----------
+
+    /** Writes random data with the requested share of whole zero chunks spread through the file */
+    private File generate(File file, long size) throws IOException {
+        Random random = new Random(size);
+        byte[] block = new byte[64 * 1024];
+        try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+            for (long written = 0; written < size; written += block.length) {
+                int n = (int) Math.min(block.length, size - written);
+                if (random.nextDouble() < zeroFraction) Arrays.fill(block, (byte) 0);
+                else random.nextBytes(block);
+                stream.write(block, 0, n);
+            }
+        }
+        return file;
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) deleteTree(child);
+        file.delete();
+    }
+}
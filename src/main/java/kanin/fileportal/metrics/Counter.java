@@ -0,0 +1,29 @@
+package kanin.fileportal.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter is a monotonically increasing total (bytes, chunks, transfers).
+ * Backed by a LongAdder, so concurrent transfer threads never contend on one cache line.
+ */
+public class Counter extends Metric {
+
+    private final LongAdder value = new LongAdder();
+
+    public Counter(String name, String help) {
+        super(name, help, "counter");
+    }
+
+    // ---------- Hot Path ----------
+    public void inc() { value.increment(); }
+
+    public void add(long amount) { value.add(amount); }
+
+    // ---------- Export ----------
+    public long get() { return value.sum(); }
+
+    @Override
+    protected void writeSamples(StringBuilder out) {
+        out.append(name).append(' ').append(get()).append('\n');
+    }
+}
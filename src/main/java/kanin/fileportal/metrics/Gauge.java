@@ -0,0 +1,28 @@
+package kanin.fileportal.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gauge is a value that goes up and down, such as the number of active transfers.
+ */
+public class Gauge extends Metric {
+
+    private final LongAdder value = new LongAdder();
+
+    public Gauge(String name, String help) {
+        super(name, help, "gauge");
+    }
+
+    // ---------- Hot Path ----------
+    public void inc() { value.increment(); }
+
+    public void dec() { value.decrement(); }
+
+    // ---------- Export ----------
+    public long get() { return value.sum(); }
+
+    @Override
+    protected void writeSamples(StringBuilder out) {
+        out.append(name).append(' ').append(get()).append('\n');
+    }
+}
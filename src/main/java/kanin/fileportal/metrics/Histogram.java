@@ -0,0 +1,74 @@
+package kanin.fileportal.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram records durations into fixed latency buckets (10 µs up to 10 s).
+ * Recording is a short scan over a constant bound table plus two LongAdder increments:
+ * no allocation and no locking, so it is safe to call once per chunk.
+ */
+public class Histogram extends Metric {
+
+    // ---------- Bucket Layout (upper bounds in nanoseconds) ----------
+    private static final long[] BOUNDS = {
+            10_000L, 50_000L, 100_000L, 500_000L,
+            1_000_000L, 5_000_000L, 10_000_000L, 50_000_000L,
+            100_000_000L, 500_000_000L, 1_000_000_000L, 10_000_000_000L
+    };
+    private static final String[] LABELS = new String[BOUNDS.length + 1]; // Bounds in seconds, as Prometheus expects
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++)
+            LABELS[i] = BigDecimal.valueOf(BOUNDS[i], 9).stripTrailingZeros().toPlainString();
+        LABELS[BOUNDS.length] = "+Inf";
+    }
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1]; // Last one is +Inf
+    private final LongAdder sumNanos = new LongAdder();
+
+    public Histogram(String name, String help) {
+        super(name, help, "histogram");
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    // ---------- Hot Path ----------
+
+    /** Records the time elapsed since {@code startNanos} (a System.nanoTime() reading) */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    public void observeNanos(long nanos) {
+        int i = 0;
+        while (i < BOUNDS.length && nanos > BOUNDS[i]) i++;
+        buckets[i].increment();
+        sumNanos.add(nanos);
+    }
+
+    // ---------- Export ----------
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) count += bucket.sum();
+        return count;
+    }
+
+    public double sumSeconds() { return sumNanos.sum() / 1e9; }
+
+    /** Mean duration in milliseconds, or 0 before anything was recorded */
+    public double meanMillis() {
+        long count = count();
+        return count == 0 ? 0 : sumNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    protected void writeSamples(StringBuilder out) {
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i].sum();
+            out.append(name).append("_bucket{le=\"").append(LABELS[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        out.append(name).append("_sum ").append(sumSeconds()).append('\n');
+        out.append(name).append("_count ").append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,32 @@
+package kanin.fileportal.metrics;
+
+/**
+ * Metric is the common base of every exported measurement.
+ * Each one knows its Prometheus name, help text and type, and how to render itself.
+ */
+public abstract class Metric {
+
+    // ---------- Metric Identity ----------
+    protected final String name;
+    protected final String help;
+    private final String type;
+
+    protected Metric(String name, String help, String type) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+    }
+
+    public String name() { return name; }
+
+    // ---------- Prometheus Text Format ----------
+
+    /** Appends the HELP/TYPE header followed by this metric's sample lines */
+    public void writeTo(StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        writeSamples(out);
+    }
+
+    protected abstract void writeSamples(StringBuilder out);
+}
@@ -0,0 +1,73 @@
+package kanin.fileportal.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.ObjectName;
+
+/**
+ * Metrics is the process-wide registry of SwiftShare's transfer measurements.
+ * The transfer code updates these fields directly on the hot path; the
+ * {@link MetricsServer} and the JMX bean only read them.
+ */
+public class Metrics {
+
+    private static final List<Metric> ALL = new ArrayList<>();
+
+    // ---------- Throughput ----------
+    public static final Counter BYTES_SENT = register(new Counter(
+            "swiftshare_bytes_sent_total", "Bytes written to peers, including record headers"));
+    public static final Counter BYTES_RECEIVED = register(new Counter(
+            "swiftshare_bytes_received_total", "Bytes read from peers, including record headers"));
+    public static final Counter BYTES_ELIDED = register(new Counter(
+            "swiftshare_bytes_elided_total", "File bytes sent as zero-run holes instead of data"));
+    public static final Counter CHUNKS = register(new Counter(
+            "swiftshare_chunks_total", "Chunk records sent or received"));
+
+    // ---------- Transfers ----------
+    public static final Gauge ACTIVE_TRANSFERS = register(new Gauge(
+            "swiftshare_active_transfers", "Transfers currently connected and moving data"));
+    public static final Counter TRANSFERS_SUCCEEDED = register(new Counter(
+            "swiftshare_transfers_succeeded_total", "Transfers that completed successfully"));
+    public static final Counter TRANSFERS_FAILED = register(new Counter(
+            "swiftshare_transfers_failed_total", "Transfers that ended with an error"));
+
+    // ---------- Latency ----------
+    public static final Histogram CHUNK_SEND_LATENCY = register(new Histogram(
+            "swiftshare_chunk_send_seconds", "Sender: time to read, encode and write one chunk frame"));
+    public static final Histogram CHUNK_RECEIVE_LATENCY = register(new Histogram(
+            "swiftshare_chunk_receive_seconds", "Receiver: time to read, decode and store one chunk frame"));
+    public static final Histogram ENCRYPT_TIME = register(new Histogram(
+            "swiftshare_encrypt_seconds", "Time spent encrypting one chunk"));
+    public static final Histogram DECRYPT_TIME = register(new Histogram(
+            "swiftshare_decrypt_seconds", "Time spent decrypting one chunk"));
+    public static final Histogram DISK_WRITE_TIME = register(new Histogram(
+            "swiftshare_disk_write_seconds", "Time spent writing one received chunk to disk"));
+    public static final Histogram DB_INSERT_TIME = register(new Histogram(
+            "swiftshare_db_insert_seconds", "Time spent logging one transfer to the history database"));
+
+    private static <T extends Metric> T register(T metric) {
+        ALL.add(metric);
+        return metric;
+    }
+
+    // ---------- Export ----------
+
+    /** Renders every metric in the Prometheus text exposition format */
+    public static String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Metric metric : ALL) metric.writeTo(out);
+        return out.toString();
+    }
+
+    /** Registers the {@link TransferMetricsMXBean} with the platform MBean server (idempotent) */
+    public static void registerJmx() {
+        try {
+            ObjectName name = new ObjectName("kanin.fileportal:type=TransferMetrics");
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) server.registerMBean(new TransferMetrics(), name);
+        } catch (Exception e) {
+            System.err.println("⚠️ Failed to register JMX metrics: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package kanin.fileportal.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MetricsServer serves {@link Metrics} at http://127.0.0.1:&lt;port&gt;/metrics in Prometheus
+ * text format using the JDK's built-in HTTP server, and registers the JMX bean.
+ * The port comes from -Dswiftshare.metrics.port (default 9464; 0 disables the endpoint).
+ */
+public class MetricsServer {
+
+    public static final int DEFAULT_PORT = 9464;
+    private static HttpServer server;
+
+    // ---------- Startup ----------
+
+    /** Starts the endpoint on the configured port; failures are logged and never block the app */
+    public static synchronized void start() {
+        Metrics.registerJmx();
+        int port = Integer.getInteger("swiftshare.metrics.port", DEFAULT_PORT);
+        if (port <= 0 || server != null) return;
+
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = Metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            System.out.println("📈 Metrics available at http://127.0.0.1:" + port + "/metrics");
+        } catch (IOException e) {
+            // Typically another instance already owns the port; JMX still works
+            System.err.println("⚠️ Metrics endpoint unavailable on port " + port + ": " + e.getMessage());
+            server = null;
+        }
+    }
+
+    // ---------- Shutdown ----------
+
+    /** Releases the port right away; called from the application's shutdown hook */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package kanin.fileportal.metrics;
+
+/**
+ * TransferMetrics exposes the shared {@link Metrics} through JMX.
+ */
+class TransferMetrics implements TransferMetricsMXBean {
+    @Override public long getBytesSent() { return Metrics.BYTES_SENT.get(); }
+    @Override public long getBytesReceived() { return Metrics.BYTES_RECEIVED.get(); }
+    @Override public long getBytesElided() { return Metrics.BYTES_ELIDED.get(); }
+    @Override public long getChunks() { return Metrics.CHUNKS.get(); }
+    @Override public long getActiveTransfers() { return Metrics.ACTIVE_TRANSFERS.get(); }
+    @Override public long getTransfersSucceeded() { return Metrics.TRANSFERS_SUCCEEDED.get(); }
+    @Override public long getTransfersFailed() { return Metrics.TRANSFERS_FAILED.get(); }
+    @Override public double getChunkSendLatencyMeanMillis() { return Metrics.CHUNK_SEND_LATENCY.meanMillis(); }
+    @Override public double getChunkReceiveLatencyMeanMillis() { return Metrics.CHUNK_RECEIVE_LATENCY.meanMillis(); }
+    @Override public double getEncryptMeanMillis() { return Metrics.ENCRYPT_TIME.meanMillis(); }
+    @Override public double getDecryptMeanMillis() { return Metrics.DECRYPT_TIME.meanMillis(); }
+    @Override public double getDiskWriteMeanMillis() { return Metrics.DISK_WRITE_TIME.meanMillis(); }
+    @Override public double getDbInsertMeanMillis() { return Metrics.DB_INSERT_TIME.meanMillis(); }
+}
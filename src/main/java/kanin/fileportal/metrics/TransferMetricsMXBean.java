@@ -0,0 +1,21 @@
+package kanin.fileportal.metrics;
+
+/**
+ * TransferMetricsMXBean is the JMX view of {@link Metrics}, visible in JConsole/VisualVM
+ * under kanin.fileportal:type=TransferMetrics.
+ */
+public interface TransferMetricsMXBean {
+    long getBytesSent();
+    long getBytesReceived();
+    long getBytesElided();
+    long getChunks();
+    long getActiveTransfers();
+    long getTransfersSucceeded();
+    long getTransfersFailed();
+    double getChunkSendLatencyMeanMillis();
+    double getChunkReceiveLatencyMeanMillis();
+    double getEncryptMeanMillis();
+    double getDecryptMeanMillis();
+    double getDiskWriteMeanMillis();
+    double getDbInsertMeanMillis();
+}
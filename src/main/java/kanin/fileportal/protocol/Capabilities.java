@@ -0,0 +1,123 @@
+package kanin.fileportal.protocol;
+
+import kanin.fileportal.security.EncryptionUtil;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Capabilities is the content of a HELLO frame: what one peer can do.
+ * Both peers send theirs right after connecting and then run the same deterministic
+ * {@link #negotiate} on the pair, so they agree on the fastest common mode without an extra round trip.
+ *
+ * HELLO payload: [byte minVersion][byte maxVersion][int ciphers][int compression][int maxChunkSize][int features]
+ *
+ * The version range comes first and HELLO is accepted with any header version, so builds that
+ * speak different protocol versions can still find the newest one they share. Later versions
+ * may only append fields, which older peers skip.
+ */
+public class Capabilities {
+
+    // ---------- Capability Bits ----------
+    public static final int CIPHER_AES128_ECB = 1;   // AES-128/ECB/PKCS5, one padded block stream per chunk
+    public static final int COMPRESS_ZERO_RUNS = 1;  // All-zero chunks travel as HOLE frames
+    public static final int FEATURE_RESUME = 1;      // Receiver may answer READY with a non-zero offset
+
+    // Fastest first: negotiation picks the first entry both peers support
+    private static final int[] CIPHER_PREFERENCE = {CIPHER_AES128_ECB};
+
+    public static final int PAYLOAD_LENGTH = 18;
+    public static final int MIN_CHUNK_SIZE = 4 * 1024;
+
+    // ---------- Attributes ----------
+    private final byte minVersion;
+    private final byte maxVersion;
+    private final int ciphers;
+    private final int compression;
+    private final int maxChunkSize;
+    private final int features;
+
+    public Capabilities(byte minVersion, byte maxVersion, int ciphers, int compression, int maxChunkSize,
+                        int features) {
+        this.minVersion = minVersion;
+        this.maxVersion = maxVersion;
+        this.ciphers = ciphers;
+        this.compression = compression;
+        this.maxChunkSize = maxChunkSize;
+        this.features = features;
+    }
+
+    /** What this build of SwiftShare supports */
+    public static Capabilities local(int maxChunkSize) {
+        return new Capabilities(Frame.MIN_VERSION, Frame.VERSION, CIPHER_AES128_ECB, COMPRESS_ZERO_RUNS,
+                maxChunkSize, FEATURE_RESUME);
+    }
+
+    // ---------- Negotiated Mode ----------
+    public byte version() { return maxVersion; }
+    public int cipher() { return Integer.lowestOneBit(ciphers); }
+    public int chunkSize() { return maxChunkSize; }
+    public boolean zeroRuns() { return (compression & COMPRESS_ZERO_RUNS) != 0; }
+    public boolean resume() { return (features & FEATURE_RESUME) != 0; }
+
+    /** Creates a cipher for the negotiated algorithm, initialised for {@code mode} */
+    public Cipher newCipher(int mode) throws IOException {
+        try {
+            return switch (cipher()) {
+                case CIPHER_AES128_ECB -> EncryptionUtil.newCipher(mode);
+                default -> throw new ProtocolException("No usable cipher negotiated (" + cipher() + ")");
+            };
+        } catch (ProtocolException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Cipher unavailable: " + e.getMessage(), e);
+        }
+    }
+
+    /** Intersects two advertisements; the newest common version and largest common chunk size win */
+    public static Capabilities negotiate(Capabilities local, Capabilities remote) throws ProtocolException {
+        byte version = (byte) Math.min(local.maxVersion, remote.maxVersion);
+        if (version < Math.max(local.minVersion, remote.minVersion))
+            throw new ProtocolException(String.format(
+                    "No protocol version supported by both peers (ours %d-%d, theirs %d-%d)", local.minVersion, local.maxVersion, remote.minVersion, remote.maxVersion));
+        int cipher = 0;
+        for (int candidate : CIPHER_PREFERENCE) {
+            if ((local.ciphers & remote.ciphers & candidate) != 0) {
+                cipher = candidate;
+                break;
+            }
+        }
+        if (cipher == 0) throw new ProtocolException("No cipher supported by both peers");
+        int chunkSize = Math.min(local.maxChunkSize, remote.maxChunkSize);
+        if (chunkSize < MIN_CHUNK_SIZE) throw new ProtocolException("Peer chunk size too small: " + chunkSize);
+        return new Capabilities(version, version, cipher, local.compression & remote.compression, chunkSize,
+                local.features & remote.features);
+    }
+
+    // ---------- Wire Format ----------
+    public void writeTo(FrameWriter out) throws IOException {
+        out.writeHeader(Frame.HELLO, PAYLOAD_LENGTH);
+        out.writeByte(minVersion);
+        out.writeByte(maxVersion);
+        out.writeInt(ciphers);
+        out.writeInt(compression);
+        out.writeInt(maxChunkSize);
+        out.writeInt(features);
+    }
+
+    public static Capabilities readFrom(FrameReader frames) throws IOException {
+        frames.expect(Frame.HELLO);
+        if (frames.length() < PAYLOAD_LENGTH) throw new ProtocolException("Short HELLO frame");
+        ByteBuffer payload = frames.payload(); // Bytes after our fields were added by newer peers
+        return new Capabilities(payload.get(), payload.get(),
+                payload.getInt(), payload.getInt(), payload.getInt(), payload.getInt());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("v%d, cipher=%s, chunk=%d KiB, zero-runs=%s, resume=%s",
+                maxVersion, cipher() == CIPHER_AES128_ECB ? "AES-128" : "none", maxChunkSize / 1024, zeroRuns(), resume());
+    }
+}
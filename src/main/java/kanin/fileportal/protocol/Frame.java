@@ -0,0 +1,105 @@
+package kanin.fileportal.protocol;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frame defines SwiftShare's binary wire format (protocol versions {@value #MIN_VERSION} to {@value #VERSION}).
+ *
+ * Every message is a frame with a fixed 8-byte, big-endian header followed by its payload:
+ * <pre>
+ *   offset 0  'S' 'W'         magic
+ *   offset 2  version         protocol version negotiated in the HELLO exchange
+ *   offset 3  type            one of the frame types below
+ *   offset 4  int length      payload length in bytes
+ * </pre>
+ * All fields sit at fixed offsets, so a frame can be validated and its payload sliced
+ * straight out of a (direct) ByteBuffer with absolute reads and no copying. Headers are
+ * written by {@link FrameWriter} and read by {@link FrameReader}.
+ */
+public class Frame {
+
+    // ---------- Header Layout ----------
+    public static final byte MAGIC_0 = 'S', MAGIC_1 = 'W';
+    public static final byte VERSION = 2;      // Newest version this build speaks
+    public static final byte MIN_VERSION = 2;  // Oldest version this build still speaks
+    public static final byte ANY_VERSION = 0;  // Accepts any version; only for HELLO, before negotiation
+    public static final int HEADER_LENGTH = 8;
+    public static final int MAX_PAYLOAD = 256 * 1024; // Bound against corrupt lengths; a chunk frame is ~64 KiB
+
+    // ---------- Frame Types ----------
+    public static final byte HELLO = 1; // Capability advertisement, sent by both peers first
+    public static final byte OFFER = 2; // Sender -> receiver: what is about to be transferred
+    public static final byte READY = 3; // Receiver -> sender: offset to start from (resume)
+    public static final byte DATA = 4;  // [int plainLength][ciphertext]
+    public static final byte HOLE = 5;  // [int plainLength] of zero bytes, nothing encrypted
+    public static final byte END = 6;   // End of one file's chunk frames
+    public static final byte ACK = 7;   // Receiver -> sender: file (or whole sync) complete and on disk
+
+    // ---------- Sync Frame Types (see TreeSync) ----------
+    public static final byte SYNC_ENTRY = 8;        // Receiver manifest: [long size][long modified][path]
+    public static final byte SYNC_ENTRIES_END = 9;  // Receiver manifest complete
+    public static final byte SYNC_FILE = 10;        // [long size][long modified][path], then chunk frames
+    public static final byte SYNC_DELETE = 11;      // [path]
+    public static final byte SYNC_CHECK = 12;       // [long modified][sha256][path], same size on both sides
+    public static final byte SYNC_WANT = 13;        // Receiver: [path] of a CHECK whose content differed
+    public static final byte SYNC_DONE = 14;        // End of a pass of operations, or of the wanted list
+    public static final byte SYNC_SUMMARY = 15;     // Sender, after the last pass: [long files left unchanged]
+
+    // ---------- Writing ----------
+
+    /** Writes a frame header into {@code buffer} at its current position */
+    public static void putHeader(ByteBuffer buffer, byte version, byte type, int payloadLength) {
+        buffer.put(MAGIC_0).put(MAGIC_1).put(version).put(type).putInt(payloadLength);
+    }
+
+    /** Decodes the rest of {@code payload} as UTF-8 */
+    public static String string(ByteBuffer payload) {
+        return StandardCharsets.UTF_8.decode(payload).toString();
+    }
+
+    // ---------- Zero-Copy Parsing ----------
+
+    /** Payload length every frame of {@code type} must have, or -1 when it varies */
+    public static int fixedLength(byte type) {
+        return switch (type) {
+            case READY, SYNC_SUMMARY -> 8;
+            case HOLE -> 4;
+            case END, ACK, SYNC_ENTRIES_END, SYNC_DONE -> 0;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Validates the header starting at {@code index} against the expected {@code version}
+     * ({@link #ANY_VERSION} skips that check) and returns its frame type.
+     * Uses absolute reads only, so the buffer's position and limit are left untouched.
+     */
+    public static byte type(ByteBuffer buffer, int index, byte version) throws ProtocolException {
+        if (buffer.get(index) != MAGIC_0 || buffer.get(index + 1) != MAGIC_1)
+            throw new ProtocolException("Peer does not speak the SwiftShare binary protocol");
+        if (version != ANY_VERSION && buffer.get(index + 2) != version)
+            throw new ProtocolException("Frame version " + buffer.get(index + 2) + " but version " + version
+                    + " was negotiated");
+        int length = buffer.getInt(index + 4);
+        if (length < 0 || length > MAX_PAYLOAD)
+            throw new ProtocolException("Corrupt frame length " + length);
+        return buffer.get(index + 3);
+    }
+
+    public static int payloadLength(ByteBuffer buffer, int index) {
+        return buffer.getInt(index + 4);
+    }
+
+    /**
+     * Returns the payload of the frame at {@code index} as a view sharing {@code buffer}'s memory,
+     * or null when the frame is not completely buffered yet.
+     */
+    public static ByteBuffer payload(ByteBuffer buffer, int index, byte version) throws ProtocolException {
+        type(buffer, index, version);
+        int length = payloadLength(buffer, index);
+        if (buffer.limit() - index < HEADER_LENGTH + length) return null;
+        return buffer.slice(index + HEADER_LENGTH, length);
+    }
+}
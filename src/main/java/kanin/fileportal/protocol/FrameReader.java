@@ -0,0 +1,97 @@
+package kanin.fileportal.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * FrameReader reads frames from a blocking channel into one direct buffer. Every frame is
+ * validated in place with {@link Frame#type} and its payload handed out as a {@link Frame#payload}
+ * slice of that buffer, so payload bytes are never copied into heap arrays on the way in.
+ *
+ * The reader fills its buffer ahead of the frame being parsed, so a connection must use
+ * exactly one FrameReader for everything it receives. Until the handshake sets the negotiated
+ * version, frames of any version are accepted so that a peer's HELLO can always be read.
+ */
+public class FrameReader {
+
+    public static final int BUFFER_SIZE = Frame.HEADER_LENGTH + Frame.MAX_PAYLOAD; // Always fits a whole frame
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE); // Unparsed bytes: position..limit
+    private ByteBuffer payload;
+    private int length;
+    private byte version = Frame.ANY_VERSION;
+
+    public FrameReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    public FrameReader(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    /** Reads straight from the socket's channel, or through its stream for plain sockets */
+    public static FrameReader of(Socket socket) throws IOException {
+        return socket.getChannel() != null
+                ? new FrameReader(socket.getChannel())
+                : new FrameReader(socket.getInputStream());
+    }
+
+    /**
+     * Reads the next frame and returns its type; EOFException means the peer disconnected.
+     * Frames of a fixed size are rejected here when their length is wrong; parsers of
+     * variable-size payloads check {@link #length()} before reading.
+     */
+    public byte next() throws IOException {
+        fill(Frame.HEADER_LENGTH);
+        int index = buffer.position();
+        byte type = Frame.type(buffer, index, version);
+        length = Frame.payloadLength(buffer, index);
+        int fixed = Frame.fixedLength(type);
+        if (fixed >= 0 && length != fixed)
+            throw new ProtocolException("Corrupt frame: type " + type + " with length " + length + ", expected " + fixed);
+        fill(Frame.HEADER_LENGTH + length);
+        index = buffer.position(); // fill() may have compacted the buffer
+        payload = Frame.payload(buffer, index, version);
+        buffer.position(index + Frame.HEADER_LENGTH + length);
+        return type;
+    }
+
+    /** Reads the next frame and fails unless it has the expected type */
+    public void expect(byte type) throws IOException {
+        byte actual = next();
+        if (actual != type)
+            throw new ProtocolException("Expected frame type " + type + " but got " + actual);
+    }
+
+    /** From now on, rejects frames whose header carries any other version */
+    public void setVersion(byte version) { this.version = version; }
+
+    /** Payload length of the frame read last */
+    public int length() { return length; }
+
+    /** Payload of the frame read last; a view of the reader's buffer, only valid until the next call to next() */
+    public ByteBuffer payload() { return payload; }
+
+    // ---------- Buffering ----------
+
+    /** Blocks until at least {@code needed} unparsed bytes are buffered */
+    private void fill(int needed) throws IOException {
+        if (buffer.remaining() >= needed) return;
+        buffer.compact();
+        try {
+            while (buffer.position() < needed) {
+                if (channel.read(buffer) < 0) throw new EOFException("Peer closed the connection");
+            }
+        } finally {
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package kanin.fileportal.protocol;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * FrameWriter is the sending half of a connection: a buffered DataOutputStream that stamps
+ * every frame header with the protocol version in use. Until the handshake settles on a
+ * version it writes this build's newest one, which is what HELLO frames carry.
+ */
+public class FrameWriter extends DataOutputStream {
+
+    private byte version = Frame.VERSION;
+
+    public FrameWriter(OutputStream out) {
+        super(new BufferedOutputStream(out));
+    }
+
+    public static FrameWriter of(Socket socket) throws IOException {
+        return new FrameWriter(socket.getOutputStream());
+    }
+
+    /** Writes a frame header; the caller writes exactly {@code payloadLength} payload bytes after it */
+    public void writeHeader(byte type, int payloadLength) throws IOException {
+        writeByte(Frame.MAGIC_0);
+        writeByte(Frame.MAGIC_1);
+        writeByte(version);
+        writeByte(type);
+        writeInt(payloadLength);
+    }
+
+    /** Protocol version written into headers; set once the handshake has negotiated it */
+    public byte version() { return version; }
+
+    public void setVersion(byte version) { this.version = version; }
+}
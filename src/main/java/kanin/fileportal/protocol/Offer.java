@@ -0,0 +1,81 @@
+package kanin.fileportal.protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Offer is the content of an OFFER frame: what the sender is about to transfer.
+ *
+ * OFFER payload: [byte mode][byte flags][long size][long modified][short nameLength][UTF-8 name]
+ */
+public class Offer {
+
+    // ---------- Modes and Flags ----------
+    public static final byte MODE_FILE = 0;
+    public static final byte MODE_SYNC = 1;
+    public static final byte FLAG_CHECKSUMS = 1;      // Sync only: compare content hashes
+    public static final byte FLAG_MIRROR_DELETES = 2; // Sync only: receiver entries may be removed
+
+    private static final int FIXED_LENGTH = 20;
+
+    // ---------- Attributes ----------
+    private final byte mode;
+    private final byte flags;
+    private final long size;
+    private final long modified;
+    private final String name;
+
+    public Offer(byte mode, byte flags, long size, long modified, String name) {
+        this.mode = mode;
+        this.flags = flags;
+        this.size = size;
+        this.modified = modified;
+        this.name = name;
+    }
+
+    public static Offer file(File file) {
+        return new Offer(MODE_FILE, (byte) 0, file.length(), file.lastModified(), file.getName());
+    }
+
+    public static Offer sync(File root, boolean mirrorDeletes, boolean checksums) {
+        byte flags = (byte) ((checksums ? FLAG_CHECKSUMS : 0) | (mirrorDeletes ? FLAG_MIRROR_DELETES : 0));
+        return new Offer(MODE_SYNC, flags, 0, 0, root.getName());
+    }
+
+    // ---------- Getters ----------
+    public boolean isSync() { return mode == MODE_SYNC; }
+    public boolean checksums() { return (flags & FLAG_CHECKSUMS) != 0; }
+    public boolean mirrorDeletes() { return (flags & FLAG_MIRROR_DELETES) != 0; }
+    public long size() { return size; }
+    public long modified() { return modified; }
+    public String name() { return name; }
+
+    // ---------- Wire Format ----------
+    public void writeTo(FrameWriter out) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeHeader(Frame.OFFER, FIXED_LENGTH + nameBytes.length);
+        out.writeByte(mode);
+        out.writeByte(flags);
+        out.writeLong(size);
+        out.writeLong(modified);
+        out.writeShort(nameBytes.length);
+        out.write(nameBytes);
+    }
+
+    public static Offer readFrom(FrameReader frames) throws IOException {
+        frames.expect(Frame.OFFER);
+        if (frames.length() < FIXED_LENGTH) throw new ProtocolException("Short OFFER frame");
+        ByteBuffer payload = frames.payload();
+        byte mode = payload.get();
+        byte flags = payload.get();
+        long size = payload.getLong();
+        long modified = payload.getLong();
+        int nameLength = Short.toUnsignedInt(payload.getShort());
+        if (nameLength > payload.remaining()) throw new ProtocolException("Malformed OFFER frame");
+        String name = Frame.string(payload.limit(payload.position() + nameLength)); // Newer peers may append fields
+        return new Offer(mode, flags, size, modified, name);
+    }
+}
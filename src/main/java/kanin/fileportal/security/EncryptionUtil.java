@@ -19,6 +19,15 @@ public class EncryptionUtil {
         return new SecretKeySpec(keyBytes, "AES");
     }
 
+    // Returns a cipher already initialized in the given mode (Cipher.ENCRYPT_MODE or DECRYPT_MODE).
+    // Streaming callers keep one per thread and reuse it for every chunk instead of
+    // paying for Cipher.getInstance() and key setup on each call.
+    public static Cipher newCipher(int mode) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(mode, getKey());
+        return cipher;
+    }
+
     // Encrypts a byte array using AES algorithm with ECB mode and PKCS5 padding.
     // It initializes the cipher in ENCRYPT_MODE using the secret key.
     // Returns the encrypted byte array (ciphertext).
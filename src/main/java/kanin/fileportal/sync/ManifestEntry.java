@@ -0,0 +1,96 @@
+package kanin.fileportal.sync;
+
+import kanin.fileportal.protocol.Frame;
+import kanin.fileportal.protocol.FrameWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * ManifestEntry describes one regular file of a synced tree:
+ * its path relative to the tree root (always '/'-separated), size and modification time.
+ * Content hashes are not part of the manifest; {@link #sha256} is computed on demand,
+ * only for files whose sizes already match on both sides.
+ */
+public class ManifestEntry {
+
+    public static final int HASH_LENGTH = 32;
+
+    // ---------- Entry Attributes ----------
+    private final String path;
+    private final long size;
+    private final long modified;
+
+    // ---------- Constructor ----------
+    public ManifestEntry(String path, long size, long modified) {
+        this.path = path;
+        this.size = size;
+        this.modified = modified;
+    }
+
+    // ---------- Getters ----------
+    public String path() { return path; }
+    public long size() { return size; }
+    public long modified() { return modified; }
+
+    // ---------- Comparison ----------
+
+    /**
+     * Orders paths segment by segment, which is exactly the order a depth-first walk
+     * over name-sorted directories produces ("a/z" sorts before "a-b", unlike plain string order).
+     */
+    public static int comparePaths(String a, String b) {
+        int i = 0, j = 0;
+        while (i < a.length() && j < b.length()) {
+            char x = a.charAt(i++), y = b.charAt(j++);
+            if (x == y) continue;
+            if (x == '/') return -1;
+            if (y == '/') return 1;
+            return Character.compare(x, y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    // ---------- Wire Format ----------
+
+    /** Writes this entry as one SYNC_ENTRY frame */
+    public void writeTo(FrameWriter out) throws IOException {
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        out.writeHeader(Frame.SYNC_ENTRY, 16 + name.length);
+        out.writeLong(size);
+        out.writeLong(modified);
+        out.write(name);
+    }
+
+    /** Parses the payload of a SYNC_ENTRY frame */
+    public static ManifestEntry readFrom(ByteBuffer payload) throws ProtocolException {
+        if (payload.remaining() <= 16) throw new ProtocolException("Malformed manifest entry");
+        long size = payload.getLong();
+        long modified = payload.getLong();
+        return new ManifestEntry(Frame.string(payload), size, modified);
+    }
+
+    // ---------- Hashing ----------
+
+    /** Computes the SHA-256 of a file with a single reusable buffer */
+    public static byte[] sha256(File file, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return digest.digest();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package kanin.fileportal.sync;
+
+/**
+ * SyncOptions holds the user's choices for a tree sync.
+ * Both flags travel to the receiver in the sync OFFER. The receiver hashes its side when asked
+ * for checksums, but mirroring is only a request: its own options say whether it lets the
+ * sender delete files or replace a file with a folder (or back).
+ */
+public class SyncOptions {
+
+    // ---------- Options ----------
+    private final boolean mirrorDeletes; // Sender: delete what it lacks; receiver: allow deletions and replacements
+    private final boolean checksums;     // Compare SHA-256 instead of trusting size + modification time
+
+    // ---------- Constructor ----------
+    public SyncOptions(boolean mirrorDeletes, boolean checksums) {
+        this.mirrorDeletes = mirrorDeletes;
+        this.checksums = checksums;
+    }
+
+    // ---------- Getters ----------
+    public boolean mirrorDeletes() { return mirrorDeletes; }
+    public boolean checksums() { return checksums; }
+}
@@ -0,0 +1,409 @@
+package kanin.fileportal.sync;
+
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.Frame;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+import kanin.fileportal.transfer.ChunkCodec;
+import kanin.fileportal.transfer.TransferEngine;
+
+import java.io.*;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+/**
+ * TreeSync brings a receiver's directory in line with the sender's.
+ *
+ * The receiver streams its manifest (sorted by {@link ManifestEntry#comparePaths}) while the
+ * sender walks its own tree in the same order and merge-joins the two, so neither side ever
+ * holds a full manifest in memory. For every difference the sender emits an operation.
+ * Every message is a {@link Frame}; after the session's HELLO/OFFER/READY a sync runs:
+ * <pre>
+ *   receiver : SYNC_ENTRY* SYNC_ENTRIES_END             (manifest, from its own thread)
+ *   sender   : {SYNC_FILE + chunk frames | SYNC_DELETE | SYNC_CHECK}* SYNC_DONE
+ *   receiver : SYNC_WANT* SYNC_DONE                      (CHECKs whose content differed)
+ *   sender   : {SYNC_FILE + chunk frames}* SYNC_DONE SYNC_SUMMARY
+ *   receiver : ACK                                       (every operation applied)
+ * </pre>
+ * Files left alone never reach the receiver without checksums, so only the sender can count
+ * them; SYNC_SUMMARY hands that count over so both sides report the same summary.
+ * With checksums, only files whose sizes already match are hashed, on either side, and
+ * only when the merge reaches them. File contents reuse the negotiated capabilities.
+ * The receiver writes its manifest from a separate thread so that both directions keep
+ * flowing even when socket buffers fill up.
+ */
+public class TreeSync {
+
+    /** Callback invoked before every file or deletion; returns the listener for that file's chunks */
+    public interface Listener {
+        ChunkCodec.Listener onEntry(String action, String path, long size) throws IOException;
+    }
+
+    /** Counters describing what a sync actually did */
+    public static class Summary {
+        public long sent, bytes, deleted, unchanged;
+
+        @Override
+        public String toString() {
+            return String.format("%d files updated (%d bytes), %d deleted, %d unchanged", sent, bytes, deleted, unchanged);
+        }
+    }
+
+    // ---------- Sender Side ----------
+
+    /** Merges the receiver's manifest with the local tree and sends only what differs */
+    public static Summary sendTree(File root, FrameReader frames, FrameWriter out, Capabilities caps,
+                                   SyncOptions options, Listener listener) throws IOException {
+        try {
+            return merge(root, frames, out, caps, options, listener);
+        } catch (EOFException e) {
+            throw new IOException("Receiver closed the connection before the sync finished", e);
+        }
+    }
+
+    private static Summary merge(File root, FrameReader frames, FrameWriter out, Capabilities caps,
+                                 SyncOptions options, Listener listener) throws IOException {
+        Summary summary = new Summary();
+        TreeWalker local = new TreeWalker(root);
+        ByteBuffer hashBuffer = options.checksums() ? ByteBuffer.allocateDirect(256 * 1024) : null;
+        ManifestEntry remote = readManifestEntry(frames);
+        ManifestEntry mine = local.hasNext() ? local.next() : null;
+        long checked = 0;
+
+        while (mine != null || remote != null) {
+            int cmp = (mine == null) ? 1 : (remote == null) ? -1 : ManifestEntry.comparePaths(mine.path(), remote.path());
+
+            if (cmp < 0) {
+                // New on the sender
+                sendFile(root, mine, out, caps, listener, summary);
+                mine = local.hasNext() ? local.next() : null;
+            } else if (cmp > 0) {
+                // Only the receiver has it
+                if (options.mirrorDeletes()) {
+                    listener.onEntry("Deleting", remote.path(), 0);
+                    writePath(out, Frame.SYNC_DELETE, remote.path());
+                    summary.deleted++;
+                }
+                remote = readManifestEntry(frames);
+            } else {
+                // Both have it: a size mismatch settles it; otherwise hash only this pair, or trust the timestamp
+                if (mine.size() != remote.size()) {
+                    sendFile(root, mine, out, caps, listener, summary);
+                } else if (options.checksums()) {
+                    listener.onEntry("Comparing", mine.path(), 0);
+                    byte[] hash = ManifestEntry.sha256(new File(root, mine.path()), hashBuffer);
+                    byte[] name = mine.path().getBytes(StandardCharsets.UTF_8);
+                    out.writeHeader(Frame.SYNC_CHECK, 8 + ManifestEntry.HASH_LENGTH + name.length);
+                    out.writeLong(mine.modified());
+                    out.write(hash);
+                    out.write(name);
+                    checked++;
+                } else if (mine.modified() == remote.modified()) {
+                    summary.unchanged++;
+                } else {
+                    sendFile(root, mine, out, caps, listener, summary);
+                }
+                mine = local.hasNext() ? local.next() : null;
+                remote = readManifestEntry(frames);
+            }
+        }
+        out.writeHeader(Frame.SYNC_DONE, 0);
+        out.flush();
+
+        // Second pass: the files whose content differed after all
+        Path base = root.toPath().toAbsolutePath().normalize();
+        String path;
+        while ((path = readWanted(frames)) != null) {
+            BasicFileAttributes attrs = Files.readAttributes(resolve(base, path), BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (!attrs.isRegularFile()) throw new IOException("Receiver asked for a non-file: " + path);
+            sendFile(root, new ManifestEntry(path, attrs.size(), attrs.lastModifiedTime().toMillis()),
+                    out, caps, listener, summary);
+            checked--;
+        }
+        summary.unchanged += checked;
+        out.writeHeader(Frame.SYNC_DONE, 0);
+        out.writeHeader(Frame.SYNC_SUMMARY, 8);
+        out.writeLong(summary.unchanged);
+        out.flush();
+
+        // Only the receiver knows whether every operation was applied; its failure is ours
+        TransferEngine.awaitAck(frames);
+        return summary;
+    }
+
+    private static void sendFile(File root, ManifestEntry entry, FrameWriter out, Capabilities caps,
+                                 Listener listener, Summary summary) throws IOException {
+        ChunkCodec.Listener progress = listener.onEntry("Sending", entry.path(), entry.size());
+        byte[] name = entry.path().getBytes(StandardCharsets.UTF_8);
+        out.writeHeader(Frame.SYNC_FILE, 16 + name.length);
+        out.writeLong(entry.size());
+        out.writeLong(entry.modified());
+        out.write(name);
+        ChunkCodec.send(new File(root, entry.path()), out, caps, 0, progress);
+        summary.sent++;
+        summary.bytes += entry.size();
+    }
+
+    private static void writePath(FrameWriter out, byte type, String path) throws IOException {
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        out.writeHeader(type, name.length);
+        out.write(name);
+    }
+
+    private static ManifestEntry readManifestEntry(FrameReader frames) throws IOException {
+        byte type = frames.next();
+        if (type == Frame.SYNC_ENTRIES_END) return null;
+        if (type != Frame.SYNC_ENTRY) throw new ProtocolException("Unexpected frame type " + type + " in manifest");
+        return ManifestEntry.readFrom(frames.payload());
+    }
+
+    private static String readWanted(FrameReader frames) throws IOException {
+        byte type = frames.next();
+        if (type == Frame.SYNC_DONE) return null;
+        if (type != Frame.SYNC_WANT) throw new ProtocolException("Unexpected frame type " + type + " in wanted list");
+        return readPath(frames.payload());
+    }
+
+    /** Decodes a non-empty path that fills the rest of {@code payload} */
+    private static String readPath(ByteBuffer payload) throws ProtocolException {
+        if (!payload.hasRemaining()) throw new ProtocolException("Sync frame without a path");
+        return Frame.string(payload);
+    }
+
+    // ---------- Receiver Side ----------
+
+    /** The folder a sync of {@code name} lands in: a subfolder of the save location, created if needed */
+    public static File receiveRoot(File directory, String name) throws IOException {
+        String folder = new File(name).getName();
+        if (folder.isEmpty() || folder.equals(".") || folder.equals(".."))
+            throw new ProtocolException("Invalid sync folder name: '" + name + "'");
+        File root = new File(directory, folder);
+        if (!root.isDirectory() && !root.mkdir())
+            throw new IOException("Cannot sync into '" + root.getAbsolutePath() + "': not a folder");
+        return root;
+    }
+
+    /** Streams the local manifest to the sender and applies the operations it sends back */
+    public static Summary receiveTree(File root, FrameReader frames, FrameWriter out, Capabilities caps,
+                                      SyncOptions options, Listener listener) throws IOException {
+        Path base = root.toPath().toAbsolutePath().normalize();
+        IOException[] manifestError = new IOException[1];
+
+        Thread manifestWriter = new Thread(() -> {
+            try {
+                TreeWalker walker = new TreeWalker(root);
+                while (walker.hasNext()) walker.next().writeTo(out);
+                out.writeHeader(Frame.SYNC_ENTRIES_END, 0);
+                out.flush();
+            } catch (IOException e) {
+                manifestError[0] = e;
+            }
+        }, "Manifest-" + root.getName());
+        manifestWriter.setDaemon(true);
+        manifestWriter.start();
+
+        Summary summary = new Summary();
+        try (WantedList wanted = new WantedList()) {
+            applyOperations(base, frames, caps, options, listener, summary, wanted);
+
+            // The manifest must be complete before the wanted list may follow it on the same stream
+            try {
+                manifestWriter.join();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Sync interrupted");
+            }
+            if (manifestError[0] != null) throw manifestError[0];
+            wanted.writeTo(out);
+            out.writeHeader(Frame.SYNC_DONE, 0);
+            out.flush();
+        }
+
+        applyOperations(base, frames, caps, options, listener, summary, null);
+        frames.expect(Frame.SYNC_SUMMARY);
+        summary.unchanged = frames.payload().getLong();
+        out.writeHeader(Frame.ACK, 0);
+        out.flush();
+        return summary;
+    }
+
+    /**
+     * Applies operations until SYNC_DONE; CHECKs whose content differs are added to {@code wanted},
+     * which is null in the second pass where CHECKs are not allowed.
+     */
+    private static void applyOperations(Path base, FrameReader frames, Capabilities caps, SyncOptions options,
+                                        Listener listener, Summary summary, WantedList wanted) throws IOException {
+        ByteBuffer hashBuffer = null;
+        byte op;
+        while ((op = frames.next()) != Frame.SYNC_DONE) {
+            ByteBuffer payload = frames.payload();
+
+            if (op == Frame.SYNC_FILE) {
+                if (payload.remaining() < 16) throw new ProtocolException("Malformed SYNC_FILE frame");
+                long size = payload.getLong();
+                long modified = payload.getLong();
+                String path = readPath(payload);
+                Path target = resolve(base, path);
+                ChunkCodec.Listener progress = listener.onEntry("Receiving", path, size);
+                makeParents(base, target.getParent(), options.mirrorDeletes());
+                boolean replacesFolder = Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS);
+                if (replacesFolder && !options.mirrorDeletes())
+                    throw new IOException("'" + path + "' is a folder here; allow sync deletions to replace it");
+
+                // Write next to the target and rename, so an interrupted sync never leaves a torn file
+                Path partial = target.resolveSibling(target.getFileName() + TransferEngine.PARTIAL_SUFFIX);
+                Files.deleteIfExists(partial);
+                try {
+                    try (FileChannel channel = FileChannel.open(partial,
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+                        summary.bytes += ChunkCodec.receive(frames, channel, caps, 0, progress);
+                    }
+                    // The sender has a file where we have a folder; DELETEs for its contents follow and find nothing
+                    if (replacesFolder) deleteTree(target);
+                    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    Files.deleteIfExists(partial);
+                    throw e;
+                }
+                Files.setLastModifiedTime(target, FileTime.fromMillis(modified)); // Next sync sees it as unchanged
+                summary.sent++;
+            } else if (op == Frame.SYNC_DELETE) {
+                String path = readPath(payload);
+                Path target = resolve(base, path);
+                if (!options.mirrorDeletes())
+                    throw new IOException("Refusing to delete '" + path + "': sync deletions are not allowed here");
+                listener.onEntry("Deleting", path, 0);
+                // Already gone when a sent file replaced one of its parent folders
+                if (Files.isDirectory(target.getParent(), LinkOption.NOFOLLOW_LINKS)
+                        && !Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS))
+                    Files.deleteIfExists(target);
+                pruneEmptyParents(base, target.getParent());
+                summary.deleted++;
+            } else if (op == Frame.SYNC_CHECK && wanted != null && options.checksums()) {
+                if (payload.remaining() < 8 + ManifestEntry.HASH_LENGTH)
+                    throw new ProtocolException("Malformed SYNC_CHECK frame");
+                long modified = payload.getLong();
+                byte[] theirs = new byte[ManifestEntry.HASH_LENGTH];
+                payload.get(theirs);
+                String path = readPath(payload);
+                Path target = resolve(base, path);
+                listener.onEntry("Comparing", path, 0);
+                if (hashBuffer == null) hashBuffer = ByteBuffer.allocateDirect(256 * 1024);
+                if (Arrays.equals(theirs, ManifestEntry.sha256(target.toFile(), hashBuffer))) {
+                    // Same content: adopt the sender's timestamp so a sync without checksums agrees too
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(modified));
+                } else {
+                    wanted.add(path);
+                }
+            } else {
+                throw new ProtocolException("Unexpected frame type " + op + " in sync operations");
+            }
+        }
+    }
+
+    /**
+     * Paths whose content differed, kept until the manifest is out. A bounded queue would stall
+     * the operation stream and deadlock both peers, and a list in memory grows with the tree,
+     * so the paths spill to a temp file (created on the first one) and are replayed from there.
+     */
+    private static class WantedList implements Closeable {
+        private File file;
+        private DataOutputStream spill;
+        private long count;
+
+        void add(String path) throws IOException {
+            if (spill == null) {
+                file = Files.createTempFile("swiftshare-wanted", ".tmp").toFile();
+                spill = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            }
+            byte[] name = path.getBytes(StandardCharsets.UTF_8);
+            spill.writeInt(name.length);
+            spill.write(name);
+            count++;
+        }
+
+        /** Streams every path back out as a SYNC_WANT frame */
+        void writeTo(FrameWriter out) throws IOException {
+            if (spill == null) return;
+            spill.close();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                for (long i = 0; i < count; i++) {
+                    byte[] name = new byte[in.readInt()];
+                    in.readFully(name);
+                    out.writeHeader(Frame.SYNC_WANT, name.length);
+                    out.write(name);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (spill == null) return;
+            spill.close();
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /** Resolves a peer-supplied path and refuses anything that escapes the sync root */
+    private static Path resolve(Path base, String path) throws IOException {
+        Path target = base.resolve(path).normalize();
+        if (!target.startsWith(base) || target.equals(base) || Arrays.asList(path.split("/")).contains(".."))
+            throw new IOException("Refusing to sync path outside the target directory: " + path);
+        return target;
+    }
+
+    /**
+     * Creates the folders leading to a received file. A file (or link) standing where the sender
+     * has a folder is removed only when the receiver allows deletions, otherwise the sync stops with an error.
+     */
+    private static void makeParents(Path base, Path dir, boolean mirrorDeletes) throws IOException {
+        Path current = base;
+        for (Path name : base.relativize(dir)) {
+            current = current.resolve(name);
+            if (Files.exists(current, LinkOption.NOFOLLOW_LINKS)
+                    && !Files.isDirectory(current, LinkOption.NOFOLLOW_LINKS)) {
+                if (!mirrorDeletes)
+                    throw new IOException("'" + base.relativize(current)
+                            + "' is a file here; allow sync deletions to replace it with a folder");
+                Files.delete(current);
+            }
+        }
+        Files.createDirectories(dir);
+    }
+
+    /** Removes a folder and everything below it without following links */
+    private static void deleteTree(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                if (e != null) throw e;
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void pruneEmptyParents(Path base, Path dir) {
+        // Stop at anything that is not a folder: a sent file may have taken a folder's place
+        while (dir != null && !dir.equals(base) && Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                Files.delete(dir);
+            } catch (IOException e) {
+                return; // Not empty (or not ours to remove): stop here
+            }
+            dir = dir.getParent();
+        }
+    }
+}
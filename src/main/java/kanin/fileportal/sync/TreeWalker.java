@@ -0,0 +1,95 @@
+package kanin.fileportal.sync;
+
+import kanin.fileportal.transfer.TransferEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * TreeWalker lazily lists every regular file below a root directory in
+ * {@link ManifestEntry#comparePaths} order. Only the name listings of the directories
+ * on the current path are held in memory, so trees with millions of files can be
+ * streamed without materialising the whole manifest.
+ * Symbolic links and unreadable files or directories are skipped.
+ */
+public class TreeWalker implements Iterator<ManifestEntry> {
+
+    // ---------- Walk State ----------
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private ManifestEntry next;
+
+    /** One directory on the current path: its relative prefix and sorted child names */
+    private static class Frame {
+        final File dir;
+        final String prefix;
+        final String[] names;
+        int index = 0;
+
+        Frame(File dir, String prefix, String[] names) {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.names = names;
+        }
+    }
+
+    // ---------- Constructor ----------
+    public TreeWalker(File root) {
+        push(root, "");
+    }
+
+    // ---------- Iterator ----------
+    @Override
+    public boolean hasNext() {
+        if (next == null) next = advance();
+        return next != null;
+    }
+
+    @Override
+    public ManifestEntry next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        ManifestEntry entry = next;
+        next = null;
+        return entry;
+    }
+
+    // ---------- Depth-First Traversal ----------
+    private ManifestEntry advance() {
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.index == frame.names.length) {
+                stack.pop();
+                continue;
+            }
+            String name = frame.names[frame.index++];
+            File file = new File(frame.dir, name);
+            String path = frame.prefix + name;
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    push(file, path + "/");
+                } else if (attrs.isRegularFile() && !name.endsWith(TransferEngine.PARTIAL_SUFFIX)) {
+                    return new ManifestEntry(path, attrs.size(), attrs.lastModifiedTime().toMillis());
+                }
+            } catch (IOException ignored) {
+                // A file that vanished or cannot be read is simply left out of the manifest
+            }
+        }
+        return null;
+    }
+
+    private void push(File dir, String prefix) {
+        String[] names = dir.list();
+        if (names == null) return; // Unreadable directory
+        Arrays.sort(names);
+        stack.push(new Frame(dir, prefix, names));
+    }
+}
@@ -0,0 +1,195 @@
+package kanin.fileportal.transfer;
+
+import kanin.fileportal.metrics.Metrics;
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.Frame;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+
+import javax.crypto.Cipher;
+import java.io.*;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * ChunkCodec turns a file into a stream of self-contained chunk frames and back.
+ *
+ * Every chunk of up to the negotiated chunk size becomes one {@link Frame}:
+ * <pre>
+ *   DATA : [header][int plainLength][AES ciphertext]
+ *   HOLE : [header][int plainLength]                (chunk is entirely zero bytes)
+ *   END  : [header]
+ * </pre>
+ * All-zero chunks (VM images, preallocated database files) are never encrypted or sent
+ * when both peers support zero runs; the receiver skips over them so the filesystem can keep
+ * them as sparse holes. Because each chunk is encrypted on its own, chunks can be produced,
+ * cached and decoded independently of each other, and a transfer can start at any chunk boundary.
+ */
+public class ChunkCodec {
+
+    // ---------- Record Layout ----------
+    public static final int CHUNK_SIZE = 64 * 1024; // Largest (and preferred) plaintext bytes per frame
+    public static final int DATA_HEADER = Frame.HEADER_LENGTH + 4;
+    public static final int HOLE_RECORD = Frame.HEADER_LENGTH + 4;
+
+    private static final byte[] ZEROS = new byte[CHUNK_SIZE];
+
+    /**
+     * Callback invoked after every record, on the transferring thread. A resumed transfer
+     * first reports its start offset once (not as a hole), so bytes done before it are never
+     * mistaken for part of the first chunk.
+     */
+    public interface Listener {
+        void onChunk(long bytesDone, boolean hole) throws IOException;
+    }
+
+    // ---------- Encoding ----------
+
+    /**
+     * Reads {@code size} bytes at {@code offset} into {@code plain} and returns the encoded frame
+     * for protocol {@code version}. {@code plain} must hold at least {@code size} bytes.
+     */
+    public static byte[] encodeChunk(FileChannel channel, long offset, int size, Cipher cipher, byte[] plain,
+                                     boolean zeroRuns, byte version) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(plain, 0, size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                throw new IOException("File shrank while being sent");
+        }
+
+        // 🕳️ Zero-run elision: a vectorised compare against a zero block is far cheaper than AES
+        if (zeroRuns && Arrays.mismatch(plain, 0, size, ZEROS, 0, size) == -1) {
+            ByteBuffer record = ByteBuffer.allocate(HOLE_RECORD);
+            Frame.putHeader(record, version, Frame.HOLE, 4);
+            return record.putInt(size).array();
+        }
+
+        try {
+            long start = System.nanoTime();
+            byte[] record = new byte[DATA_HEADER + cipher.getOutputSize(size)];
+            int written = cipher.doFinal(plain, 0, size, record, DATA_HEADER);
+            Metrics.ENCRYPT_TIME.observeSince(start);
+            ByteBuffer header = ByteBuffer.wrap(record, 0, DATA_HEADER);
+            Frame.putHeader(header, version, Frame.DATA, 4 + written);
+            header.putInt(size);
+            return record;
+        } catch (Exception e) {
+            throw new IOException("Encryption error: " + e.getMessage(), e);
+        }
+    }
+
+    /** True when {@code record} is a HOLE frame */
+    public static boolean isHole(byte[] record) {
+        return record[3] == Frame.HOLE;
+    }
+
+    /** Number of frames (excluding END) a file of {@code length} bytes is split into */
+    public static int chunkCount(long length, int chunkSize) {
+        return (int) ((length + chunkSize - 1) / chunkSize);
+    }
+
+    /** Encodes the file from {@code offset} onwards onto {@code out}, terminated by an END frame */
+    public static void send(File file, FrameWriter out, Capabilities caps, long offset, Listener listener)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Cipher cipher = caps.newCipher(Cipher.ENCRYPT_MODE);
+            byte[] plain = new byte[caps.chunkSize()];
+            long length = channel.size();
+            if (offset > 0) listener.onChunk(offset, false);
+            for (; offset < length; offset += caps.chunkSize()) {
+                long start = System.nanoTime();
+                int size = (int) Math.min(caps.chunkSize(), length - offset);
+                byte[] record = encodeChunk(channel, offset, size, cipher, plain, caps.zeroRuns(), caps.version());
+                out.write(record);
+                recordSent(record, size, start);
+                listener.onChunk(offset + size, isHole(record));
+            }
+            writeEnd(out);
+        }
+    }
+
+    public static void writeEnd(FrameWriter out) throws IOException {
+        out.writeHeader(Frame.END, 0);
+        out.flush();
+    }
+
+    // ---------- Decoding ----------
+
+    /**
+     * Decodes frames into {@code out}, starting at file offset {@code position}, until END and
+     * returns the file length. Frames must stay within the negotiated {@code caps}: chunks no
+     * larger than its chunk size, and HOLE frames only when zero runs were agreed. Ciphertext is decrypted straight from the reader's direct buffer
+     * into a direct plaintext buffer that the file channel writes without another copy. Holes are
+     * skipped rather than written, so the output stays sparse where the filesystem allows it.
+     */
+    public static long receive(FrameReader frames, FileChannel out, Capabilities caps, long position,
+                               Listener listener) throws IOException {
+        Cipher cipher = caps.newCipher(Cipher.DECRYPT_MODE);
+        int maxCipherLength = caps.chunkSize() + cipher.getBlockSize(); // Padding adds at most one block
+        ByteBuffer plain = ByteBuffer.allocateDirect(maxCipherLength);
+        boolean endsInHole = false;
+        if (position > 0) listener.onChunk(position, false);
+
+        while (true) {
+            byte type = frames.next(); // EOFException here means the sender vanished mid-transfer
+            if (type == Frame.END) break;
+            if (type != Frame.DATA && type != Frame.HOLE)
+                throw new ProtocolException("Unexpected frame type " + type + " in chunk stream");
+            if (type == Frame.HOLE && !caps.zeroRuns())
+                throw new ProtocolException("HOLE frame although zero runs were not negotiated");
+            long start = System.nanoTime();
+            if (frames.length() < 4) throw new ProtocolException("Corrupt chunk frame (length " + frames.length() + ")");
+            ByteBuffer payload = frames.payload();
+            int size = payload.getInt();
+            if (size <= 0 || size > caps.chunkSize())
+                throw new ProtocolException("Corrupt chunk frame (size " + size + ")");
+
+            if (type == Frame.HOLE) {
+                endsInHole = true;
+                Metrics.BYTES_RECEIVED.add(HOLE_RECORD);
+                Metrics.BYTES_ELIDED.add(size);
+            } else if (type == Frame.DATA) {
+                int length = payload.remaining();
+                if (length <= 0 || length > maxCipherLength)
+                    throw new ProtocolException("Corrupt chunk frame (cipher length " + length + ")");
+                int decrypted;
+                long decryptStart = System.nanoTime();
+                try {
+                    decrypted = cipher.doFinal(payload, plain.clear());
+                } catch (Exception e) {
+                    throw new IOException("Decryption error: " + e.getMessage(), e);
+                }
+                Metrics.DECRYPT_TIME.observeSince(decryptStart);
+                if (decrypted != size)
+                    throw new IOException("Chunk length mismatch after decryption");
+                long writeStart = System.nanoTime();
+                plain.flip();
+                while (plain.hasRemaining()) out.write(plain, position + plain.position());
+                Metrics.DISK_WRITE_TIME.observeSince(writeStart);
+                Metrics.BYTES_RECEIVED.add(DATA_HEADER + length);
+                endsInHole = false;
+            }
+            position += size;
+            Metrics.CHUNKS.inc();
+            Metrics.CHUNK_RECEIVE_LATENCY.observeSince(start);
+            listener.onChunk(position, type == Frame.HOLE);
+        }
+
+        // A trailing hole never touched the disk; one byte at the end fixes the length and keeps it sparse
+        if (endsInHole && out.size() < position) out.write(ByteBuffer.allocate(1), position - 1);
+        return position;
+    }
+
+    // ---------- Instrumentation ----------
+
+    /** Accounts for one frame written by any sender (single transfer or fan-out) */
+    public static void recordSent(byte[] record, int size, long startNanos) {
+        Metrics.BYTES_SENT.add(record.length);
+        if (isHole(record)) Metrics.BYTES_ELIDED.add(size);
+        Metrics.CHUNKS.inc();
+        Metrics.CHUNK_SEND_LATENCY.observeSince(startNanos);
+    }
+}
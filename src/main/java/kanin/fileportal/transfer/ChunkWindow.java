@@ -0,0 +1,146 @@
+package kanin.fileportal.transfer;
+
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.Frame;
+import kanin.fileportal.security.EncryptionUtil;
+
+import javax.crypto.Cipher;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ChunkWindow reads and encrypts a file exactly once and shares the result with
+ * any number of consumers (one per receiver connection).
+ *
+ * Encoded {@link ChunkCodec} records live in a bounded ring of {@code capacity} slots.
+ * A background producer stays at most {@code capacity} chunks ahead of the fastest
+ * consumer, so memory use is fixed no matter how many receivers are attached. A consumer that
+ * falls so far behind that its chunk has already been evicted does not hold the
+ * window back — it re-reads and encrypts that chunk from disk on its own thread.
+ */
+public class ChunkWindow implements Closeable {
+
+    // ---------- Configuration ----------
+    public static final int DEFAULT_CAPACITY = 64; // 64 x 64 KiB = 4 MiB shared window
+
+    // ---------- File State ----------
+    private final FileChannel channel;
+    private final long length;
+    private final int chunkCount;
+
+    // ---------- Window State (guarded by this) ----------
+    private final byte[][] slots;
+    private int produced = 0; // Chunks [0, produced) have been encrypted at least once
+    private int leader = 0;   // Highest chunk index requested by any consumer, plus one
+    private IOException failure;
+    private boolean closed;
+
+    private final Thread producer;
+
+    // ---------- Constructor ----------
+    public ChunkWindow(File file, int capacity) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.length = channel.size();
+        this.chunkCount = ChunkCodec.chunkCount(length, ChunkCodec.CHUNK_SIZE);
+        this.slots = new byte[capacity][];
+        this.producer = new Thread(this::produce, "ChunkWindow-" + file.getName());
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    // ---------- Accessors ----------
+    public int chunkCount() { return chunkCount; }
+
+    public long length() { return length; }
+
+    /** True when receivers with these negotiated capabilities can be served from this window */
+    public boolean servesFrames(Capabilities caps) {
+        return caps.cipher() == Capabilities.CIPHER_AES128_ECB && caps.chunkSize() == ChunkCodec.CHUNK_SIZE
+                && caps.zeroRuns() && caps.version() == Frame.VERSION;
+    }
+
+    /** Plaintext bytes covered by chunks [0, index] */
+    public long bytesThrough(int index) {
+        return Math.min((long) (index + 1) * ChunkCodec.CHUNK_SIZE, length);
+    }
+
+    // ---------- Consumer API ----------
+
+    /**
+     * Returns the encoded record for chunk {@code index}. Blocks while the producer has not reached it yet;
+     * if it has already been evicted from the window, it is rebuilt from disk with the caller's cipher.
+     * The returned array must be treated as read-only since other consumers may share it.
+     */
+    public byte[] chunk(int index, Cipher fallbackCipher) throws IOException {
+        synchronized (this) {
+            if (index + 1 > leader) {
+                leader = index + 1;
+                notifyAll(); // Let the producer move further ahead
+            }
+            while (index >= produced && failure == null && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for chunk " + index, e);
+                }
+            }
+            if (failure != null) throw failure;
+            if (closed) throw new IOException("Chunk window closed");
+            if (index >= produced - slots.length) return slots[index % slots.length];
+        }
+        // Evicted: this consumer is a straggler, serve it straight from disk
+        return encode(index, fallbackCipher, new byte[ChunkCodec.CHUNK_SIZE]);
+    }
+
+    /** True when {@code index} is no longer held in memory and would be read from disk */
+    public synchronized boolean isEvicted(int index) {
+        return index < produced - slots.length;
+    }
+
+    // ---------- Producer ----------
+    private void produce() {
+        try {
+            Cipher cipher = EncryptionUtil.newCipher(Cipher.ENCRYPT_MODE);
+            byte[] plain = new byte[ChunkCodec.CHUNK_SIZE];
+            for (int i = 0; i < chunkCount; i++) {
+                synchronized (this) {
+                    // Never run more than one window ahead of the fastest consumer
+                    while (i >= leader + slots.length && !closed) wait();
+                    if (closed) return;
+                }
+                byte[] record = encode(i, cipher, plain);
+                synchronized (this) {
+                    slots[i % slots.length] = record;
+                    produced = i + 1;
+                    notifyAll();
+                }
+            }
+        } catch (Exception e) {
+            synchronized (this) {
+                failure = (e instanceof IOException) ? (IOException) e : new IOException(e.getMessage(), e);
+                notifyAll();
+            }
+        }
+    }
+
+    // ---------- Chunk Encoding ----------
+    private byte[] encode(int index, Cipher cipher, byte[] plain) throws IOException {
+        long offset = (long) index * ChunkCodec.CHUNK_SIZE;
+        int size = (int) Math.min(ChunkCodec.CHUNK_SIZE, length - offset);
+        return ChunkCodec.encodeChunk(channel, offset, size, cipher, plain, true, Frame.VERSION);
+    }
+
+    // ---------- Cleanup ----------
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,187 @@
+package kanin.fileportal.transfer;
+
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.Frame;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+import kanin.fileportal.protocol.Offer;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TransferEngine holds the socket-level steps of a transfer without any UI.
+ * A session on the binary protocol ({@link Frame}) runs:
+ * <pre>
+ *   both     : HELLO            (version range and capabilities; both negotiate the same result)
+ *   sender   : OFFER            (file or sync, name, size, modification time)
+ *   receiver : READY [offset]   (non-zero when resuming a partial file)
+ *   sender   : DATA/HOLE... END (ChunkCodec frames)
+ *   receiver : ACK              (file complete and renamed into place)
+ * </pre>
+ * FileTransferThread, FanOutTransfer and the load-test harness all drive these same methods,
+ * each reading every frame of a connection through one {@link FrameReader}.
+ */
+public class TransferEngine {
+
+    /** Suffix of files still being received; never part of a sync manifest */
+    public static final String PARTIAL_SUFFIX = ".swiftshare.part";
+
+    // ---------- Sockets ----------
+
+    /** Opens a channel-backed listening socket, so accepted sockets can be read with {@link FrameReader#of} */
+    public static ServerSocket listen(InetSocketAddress address, int backlog) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            return channel.bind(address, backlog).socket();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Connects a channel-backed socket, so it can be read with {@link FrameReader#of} */
+    public static Socket connect(InetSocketAddress address) throws IOException {
+        if (address.isUnresolved()) throw new UnknownHostException(address.getHostString());
+        return SocketChannel.open(address).socket();
+    }
+
+    // ---------- Handshake ----------
+
+    /**
+     * Exchanges HELLO frames and returns the capabilities both peers will use. Every later
+     * frame in either direction must carry the negotiated protocol version.
+     */
+    public static Capabilities handshake(FrameReader frames, FrameWriter out) throws IOException {
+        Capabilities local = Capabilities.local(ChunkCodec.CHUNK_SIZE);
+        local.writeTo(out);
+        out.flush();
+        Capabilities caps = Capabilities.negotiate(local, Capabilities.readFrom(frames));
+        frames.setVersion(caps.version());
+        out.setVersion(caps.version());
+        return caps;
+    }
+
+    // ---------- Sending ----------
+
+    /** Sends an OFFER and returns the offset the receiver asked to start from */
+    public static long offer(FrameReader frames, FrameWriter out, Capabilities caps, Offer offer)
+            throws IOException {
+        offer.writeTo(out);
+        out.flush();
+        frames.expect(Frame.READY);
+        long offset = frames.payload().getLong();
+        if (offset < 0 || offset > offer.size() || (offset > 0 && (!caps.resume() || offset % caps.chunkSize() != 0)))
+            throw new ProtocolException("Invalid resume offset " + offset);
+        return offset;
+    }
+
+    /** Runs a complete single-file session: handshake, offer, chunk frames, acknowledgement */
+    public static Capabilities sendFile(FrameReader frames, FrameWriter out, File file,
+                                        ChunkCodec.Listener listener) throws IOException {
+        Capabilities caps = handshake(frames, out);
+        long offset = offer(frames, out, caps, Offer.file(file));
+        ChunkCodec.send(file, out, caps, offset, listener);
+        awaitAck(frames);
+        return caps;
+    }
+
+    /** Blocks until the receiver confirms the file (or sync) is on disk */
+    public static void awaitAck(FrameReader frames) throws IOException {
+        try {
+            frames.expect(Frame.ACK);
+        } catch (EOFException e) {
+            throw new IOException("Receiver closed the connection without confirming the transfer", e);
+        }
+    }
+
+    // ---------- Receiving ----------
+
+    public static Offer readOffer(FrameReader frames) throws IOException {
+        return Offer.readFrom(frames);
+    }
+
+    public static void ready(FrameWriter out, long offset) throws IOException {
+        out.writeHeader(Frame.READY, 8);
+        out.writeLong(offset);
+        out.flush();
+    }
+
+    /**
+     * Receives the offered file into {@code directory} and returns where it was saved.
+     * Data goes to a partial file named after the offer's name, size and modification time;
+     * when both peers support resume, a partial file left by an interrupted attempt is
+     * continued from its last complete chunk instead of starting over.
+     */
+    public static File receiveFile(FrameReader frames, FrameWriter out, Capabilities caps, File directory,
+                                   Offer offer, ChunkCodec.Listener listener) throws IOException {
+        String name = new File(offer.name()).getName(); // Never trust a path from the peer
+        File partial = new File(directory, name + "." + offer.size() + "." + offer.modified() + PARTIAL_SUFFIX);
+
+        long offset = 0;
+        FileChannel channel;
+        if (caps.resume() && partial.isFile()) {
+            offset = Math.min(partial.length(), offer.size()) / caps.chunkSize() * caps.chunkSize();
+            channel = FileChannel.open(partial.toPath(), StandardOpenOption.WRITE);
+        } else {
+            Files.deleteIfExists(partial.toPath());
+            channel = FileChannel.open(partial.toPath(),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE);
+        }
+
+        long[] received = {offset};
+        try (channel) {
+            // Holes are never written, so stale bytes past the resume offset would survive under them
+            channel.truncate(offset);
+            ready(out, offset);
+            try {
+                long length = ChunkCodec.receive(frames, channel, caps, offset, (done, hole) -> {
+                    received[0] = done;
+                    listener.onChunk(done, hole);
+                });
+                if (length != offer.size())
+                    throw new IOException("Received " + length + " of " + offer.size() + " bytes");
+                channel.truncate(length);
+            } catch (IOException e) {
+                // Holes received just before the failure never touched the disk; keep them in the resume offset
+                if (caps.resume() && channel.size() < received[0])
+                    channel.write(ByteBuffer.allocate(1), received[0] - 1);
+                throw e;
+            }
+        } catch (IOException e) {
+            // Without resume a partial file is useless; with it, it is the next attempt's head start
+            if (!caps.resume()) Files.deleteIfExists(partial.toPath());
+            throw e;
+        }
+
+        File target = reserveInbound(directory, name);
+        Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        out.writeHeader(Frame.ACK, 0);
+        out.flush();
+        return target;
+    }
+
+    /**
+     * Creates a new, empty file for an incoming {@code name} inside {@code directory},
+     * prefixing "copy_" until the name is free.
+     */
+    public static File reserveInbound(File directory, String name) throws IOException {
+        File file = new File(directory, new File(name).getName());
+        while (true) {
+            try {
+                Files.createFile(file.toPath());
+                return file;
+            } catch (FileAlreadyExistsException e) {
+                file = new File(directory, "copy_" + file.getName());
+            }
+        }
+    }
+}
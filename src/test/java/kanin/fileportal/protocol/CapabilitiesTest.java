@@ -0,0 +1,90 @@
+package kanin.fileportal.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Both peers run {@link Capabilities#negotiate} on the same pair of HELLOs, so its result
+ * must be the common subset regardless of which side is "local".
+ */
+class CapabilitiesTest {
+
+    private static Capabilities peer(int minVersion, int maxVersion, int ciphers, int compression, int chunkSize,
+                                     int features) {
+        return new Capabilities((byte) minVersion, (byte) maxVersion, ciphers, compression, chunkSize, features);
+    }
+
+    @Test
+    void negotiatesTheCommonSubsetOnBothSides() throws ProtocolException {
+        Capabilities a = peer(2, 2, Capabilities.CIPHER_AES128_ECB, Capabilities.COMPRESS_ZERO_RUNS, 64 * 1024,
+                Capabilities.FEATURE_RESUME);
+        Capabilities b = peer(2, 2, Capabilities.CIPHER_AES128_ECB, 0, 16 * 1024, Capabilities.FEATURE_RESUME);
+
+        for (Capabilities caps : new Capabilities[]{Capabilities.negotiate(a, b), Capabilities.negotiate(b, a)}) {
+            assertEquals(Capabilities.CIPHER_AES128_ECB, caps.cipher());
+            assertEquals(16 * 1024, caps.chunkSize());
+            assertFalse(caps.zeroRuns());
+            assertTrue(caps.resume());
+            assertEquals(2, caps.version());
+        }
+    }
+
+    @Test
+    void picksTheNewestVersionBothSpeak() throws ProtocolException {
+        Capabilities older = peer(1, 2, Capabilities.CIPHER_AES128_ECB, 0, 64 * 1024, 0);
+        Capabilities newer = peer(2, 5, Capabilities.CIPHER_AES128_ECB, 0, 64 * 1024, 0);
+        assertEquals(2, Capabilities.negotiate(older, newer).version());
+        assertEquals(2, Capabilities.negotiate(newer, older).version());
+    }
+
+    @Test
+    void refusesPeersWithoutACommonVersion() {
+        Capabilities old = peer(1, 1, Capabilities.CIPHER_AES128_ECB, 0, 64 * 1024, 0);
+        Capabilities current = Capabilities.local(64 * 1024);
+        assertThrows(ProtocolException.class, () -> Capabilities.negotiate(current, old));
+    }
+
+    @Test
+    void refusesPeersWithoutACommonCipher() {
+        Capabilities other = peer(2, 2, 1 << 4, 0, 64 * 1024, 0);
+        assertThrows(ProtocolException.class, () -> Capabilities.negotiate(Capabilities.local(64 * 1024), other));
+    }
+
+    @Test
+    void refusesChunkSizesBelowTheMinimum() {
+        Capabilities tiny = peer(2, 2, Capabilities.CIPHER_AES128_ECB, 0, 512, 0);
+        assertThrows(ProtocolException.class, () -> Capabilities.negotiate(Capabilities.local(64 * 1024), tiny));
+    }
+
+    @Test
+    void helloRoundTripsAndSkipsFieldsFromNewerPeers() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FrameWriter out = new FrameWriter(bytes);
+        out.setVersion((byte) 9); // HELLO is read whatever version its header carries
+        out.writeHeader(Frame.HELLO, Capabilities.PAYLOAD_LENGTH + 3);
+        out.writeByte(2);
+        out.writeByte(9);
+        out.writeInt(Capabilities.CIPHER_AES128_ECB);
+        out.writeInt(Capabilities.COMPRESS_ZERO_RUNS);
+        out.writeInt(32 * 1024);
+        out.writeInt(Capabilities.FEATURE_RESUME);
+        out.write(new byte[]{1, 2, 3});
+        Capabilities.local(64 * 1024).writeTo(out);
+        out.flush();
+
+        FrameReader frames = new FrameReader(new ByteArrayInputStream(bytes.toByteArray()));
+        Capabilities newer = Capabilities.readFrom(frames);
+        Capabilities local = Capabilities.readFrom(frames);
+        Capabilities caps = Capabilities.negotiate(local, newer);
+        assertEquals(Frame.VERSION, caps.version());
+        assertEquals(32 * 1024, caps.chunkSize());
+        assertTrue(caps.zeroRuns());
+        assertTrue(caps.resume());
+    }
+}
@@ -0,0 +1,166 @@
+package kanin.fileportal.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Frames written by {@link FrameWriter} must read back unchanged through {@link FrameReader},
+ * and anything malformed must fail with a ProtocolException before its payload is parsed.
+ */
+class FrameReaderTest {
+
+    private interface Frames {
+        void writeTo(FrameWriter out) throws IOException;
+    }
+
+    private static FrameReader read(Frames frames) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FrameWriter out = new FrameWriter(bytes);
+        frames.writeTo(out);
+        out.flush();
+        return new FrameReader(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static FrameReader read(byte[] raw) {
+        return new FrameReader(new ByteArrayInputStream(raw));
+    }
+
+    @Test
+    void framesRoundTripWithTheirPayloads() throws IOException {
+        byte[] large = new byte[200 * 1024];
+        large[large.length - 1] = 42;
+        FrameReader frames = read(out -> {
+            out.writeHeader(Frame.READY, 8);
+            out.writeLong(123_456L);
+            out.writeHeader(Frame.DATA, large.length);
+            out.write(large);
+            out.writeHeader(Frame.END, 0);
+        });
+
+        assertEquals(Frame.READY, frames.next());
+        assertEquals(123_456L, frames.payload().getLong());
+        assertEquals(Frame.DATA, frames.next());
+        ByteBuffer payload = frames.payload();
+        assertEquals(large.length, payload.remaining());
+        assertEquals(42, payload.get(large.length - 1));
+        assertEquals(Frame.END, frames.next());
+        assertEquals(0, frames.length());
+        assertThrows(EOFException.class, frames::next);
+    }
+
+    @Test
+    void rejectsCorruptLengths() {
+        byte[] negative = {'S', 'W', Frame.VERSION, Frame.DATA, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+        assertThrows(ProtocolException.class, () -> read(negative).next());
+
+        ByteBuffer huge = ByteBuffer.allocate(Frame.HEADER_LENGTH);
+        Frame.putHeader(huge, Frame.VERSION, Frame.DATA, Frame.MAX_PAYLOAD + 1);
+        assertThrows(ProtocolException.class, () -> read(huge.array()).next());
+    }
+
+    @Test
+    void rejectsFixedSizeFramesWithTheWrongLength() throws IOException {
+        FrameReader shortReady = read(out -> {
+            out.writeHeader(Frame.READY, 4);
+            out.writeInt(0);
+        });
+        assertThrows(ProtocolException.class, shortReady::next);
+
+        FrameReader longHole = read(out -> {
+            out.writeHeader(Frame.HOLE, 8);
+            out.writeLong(4096);
+        });
+        assertThrows(ProtocolException.class, longHole::next);
+
+        FrameReader ackWithPayload = read(out -> {
+            out.writeHeader(Frame.ACK, 1);
+            out.writeByte(0);
+        });
+        assertThrows(ProtocolException.class, ackWithPayload::next);
+    }
+
+    @Test
+    void rejectsBadMagic() {
+        byte[] http = "GET / HTTP/1.1\r\n".getBytes();
+        assertThrows(ProtocolException.class, () -> read(http).next());
+    }
+
+    @Test
+    void acceptsOnlyTheNegotiatedVersionOnceSet() throws IOException {
+        Frames twoAcks = out -> {
+            out.writeHeader(Frame.ACK, 0);
+            out.setVersion((byte) (Frame.VERSION + 1));
+            out.writeHeader(Frame.ACK, 0);
+        };
+
+        FrameReader any = read(twoAcks);
+        assertEquals(Frame.ACK, any.next());
+        assertEquals(Frame.ACK, any.next());
+
+        FrameReader negotiated = read(twoAcks);
+        negotiated.setVersion(Frame.VERSION);
+        assertEquals(Frame.ACK, negotiated.next());
+        assertThrows(ProtocolException.class, negotiated::next);
+    }
+
+    @Test
+    void offerRoundTrips() throws IOException {
+        Offer sync = Offer.sync(new File("photos"), true, false);
+        FrameReader frames = read(sync::writeTo);
+
+        Offer read = Offer.readFrom(frames);
+        assertTrue(read.isSync());
+        assertTrue(read.mirrorDeletes());
+        assertFalse(read.checksums());
+        assertEquals("photos", read.name());
+    }
+
+    @Test
+    void offerToleratesFieldsFromNewerPeers() throws IOException {
+        FrameReader frames = read(out -> {
+            out.writeHeader(Frame.OFFER, 20 + 3 + 5);
+            out.writeByte(Offer.MODE_FILE);
+            out.writeByte(0);
+            out.writeLong(1000);
+            out.writeLong(77);
+            out.writeShort(3);
+            out.write("a.b".getBytes());
+            out.write(new byte[5]);
+        });
+
+        Offer offer = Offer.readFrom(frames);
+        assertFalse(offer.isSync());
+        assertEquals(1000, offer.size());
+        assertEquals(77, offer.modified());
+        assertEquals("a.b", offer.name());
+    }
+
+    @Test
+    void rejectsMalformedOffers() throws IOException {
+        FrameReader tooShort = read(out -> {
+            out.writeHeader(Frame.OFFER, 10);
+            out.write(new byte[10]);
+        });
+        assertThrows(ProtocolException.class, () -> Offer.readFrom(tooShort));
+
+        FrameReader nameOverrun = read(out -> {
+            out.writeHeader(Frame.OFFER, 20 + 2);
+            out.writeByte(Offer.MODE_FILE);
+            out.writeByte(0);
+            out.writeLong(1);
+            out.writeLong(1);
+            out.writeShort(500);
+            out.write("ab".getBytes());
+        });
+        assertThrows(ProtocolException.class, () -> Offer.readFrom(nameOverrun));
+    }
+}
@@ -0,0 +1,56 @@
+package kanin.fileportal.sync;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The sync merge-join is only correct if {@link ManifestEntry#comparePaths} agrees with
+ * the order {@link TreeWalker} emits; these tests pin that down.
+ */
+class ManifestEntryTest {
+
+    @Test
+    void folderContentsSortBeforeSiblingsWithHigherNames() {
+        // '-' and '.' sort before '/' as characters, but a folder's contents come first in a walk
+        assertTrue(ManifestEntry.comparePaths("a/z", "a-b") < 0);
+        assertTrue(ManifestEntry.comparePaths("a/z", "a.txt") < 0);
+        assertTrue(ManifestEntry.comparePaths("a-b", "a.txt") < 0);
+        assertTrue(ManifestEntry.comparePaths("a", "a/z") < 0);
+        assertEquals(0, ManifestEntry.comparePaths("a/z", "a/z"));
+    }
+
+    @Test
+    void walkerOrderMatchesComparePaths(@TempDir Path root) throws IOException {
+        for (String path : new String[]{"a.txt", "a-b", "a/z", "a/b/c", "a0", "b", "A"}) {
+            Path file = root.resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.write(file, path.getBytes());
+        }
+
+        List<String> walked = new ArrayList<>();
+        new TreeWalker(root.toFile()).forEachRemaining(entry -> walked.add(entry.path()));
+
+        assertEquals(List.of("A", "a/b/c", "a/z", "a-b", "a.txt", "a0", "b"), walked);
+        for (int i = 1; i < walked.size(); i++)
+            assertTrue(ManifestEntry.comparePaths(walked.get(i - 1), walked.get(i)) < 0,
+                    walked.get(i - 1) + " should sort before " + walked.get(i));
+    }
+
+    @Test
+    void partialFilesAreLeftOutOfTheManifest(@TempDir Path root) throws IOException {
+        Files.write(root.resolve("done.bin"), new byte[3]);
+        Files.write(root.resolve("busy.bin.swiftshare.part"), new byte[3]);
+
+        TreeWalker walker = new TreeWalker(root.toFile());
+        assertEquals("done.bin", walker.next().path());
+        assertFalse(walker.hasNext());
+    }
+}
@@ -0,0 +1,220 @@
+package kanin.fileportal.sync;
+
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.Frame;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+import kanin.fileportal.transfer.ChunkCodec;
+import kanin.fileportal.transfer.TransferEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Whole syncs over a loopback connection: the receiver's tree must end up matching the sender's,
+ * both sides must report the same summary, and the receiver must refuse deletions it did not
+ * allow and any path that escapes its sync folder.
+ */
+@Timeout(30)
+class TreeSyncTest {
+
+    private static final TreeSync.Listener QUIET = (action, path, size) -> (done, hole) -> {};
+
+    private interface Sender {
+        TreeSync.Summary run(FrameReader frames, FrameWriter out, Capabilities caps) throws IOException;
+    }
+
+    /** Runs {@code sender} against a receiver syncing into {@code target}; returns {sent, received} */
+    private static TreeSync.Summary[] sync(Path target, SyncOptions receiving, Sender sender) throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (ServerSocket server = TransferEngine.listen(new InetSocketAddress(loopback, 0), 1)) {
+            FutureTask<TreeSync.Summary> receiver = new FutureTask<>(() -> {
+                try (Socket socket = server.accept()) {
+                    FrameReader frames = FrameReader.of(socket);
+                    FrameWriter out = FrameWriter.of(socket);
+                    Capabilities caps = TransferEngine.handshake(frames, out);
+                    return TreeSync.receiveTree(target.toFile(), frames, out, caps, receiving, QUIET);
+                }
+            });
+            new Thread(receiver, "Receiver").start();
+
+            TreeSync.Summary sent;
+            try (Socket socket = TransferEngine.connect(new InetSocketAddress(loopback, server.getLocalPort()))) {
+                FrameReader frames = FrameReader.of(socket);
+                FrameWriter out = FrameWriter.of(socket);
+                sent = sender.run(frames, out, TransferEngine.handshake(frames, out));
+            } catch (IOException e) {
+                received(receiver); // The receiver's refusal is what the sender saw as a closed connection
+                throw e;
+            }
+            return new TreeSync.Summary[]{sent, received(receiver)};
+        }
+    }
+
+    private static TreeSync.Summary[] sync(Path source, Path target, SyncOptions sending, SyncOptions receiving)
+            throws Exception {
+        return sync(target, receiving, (frames, out, caps) ->
+                TreeSync.sendTree(source.toFile(), frames, out, caps, sending, QUIET));
+    }
+
+    private static TreeSync.Summary received(FutureTask<TreeSync.Summary> receiver) throws Exception {
+        try {
+            return receiver.get();
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /** Creates {@code name} holding each of {@code files}, whose content is its own path */
+    private static Path tree(Path work, String name, String... files) throws IOException {
+        Path root = Files.createDirectories(work.resolve(name));
+        for (String file : files) {
+            Path path = root.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file);
+        }
+        return root;
+    }
+
+    /** Every path below {@code root}, folders marked with a trailing slash */
+    private static List<String> list(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(path -> !path.equals(root))
+                    .map(path -> root.relativize(path).toString().replace('\\', '/') + (Files.isDirectory(path) ? "/" : ""))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static void assertSummary(long sent, long bytes, long deleted, long unchanged, TreeSync.Summary[] both) {
+        for (TreeSync.Summary summary : both) {
+            assertEquals(sent, summary.sent, "sent: " + summary);
+            assertEquals(bytes, summary.bytes, "bytes: " + summary);
+            assertEquals(deleted, summary.deleted, "deleted: " + summary);
+            assertEquals(unchanged, summary.unchanged, "unchanged: " + summary);
+        }
+    }
+
+    @Test
+    void mirrorsDeletionsAndReplacesFilesWithFoldersAndBack(@TempDir Path work) throws Exception {
+        Path source = tree(work, "source", "x", "k/m", "kept");
+        Path target = tree(work, "target", "x/y", "k", "gone/deep");
+        SyncOptions mirror = new SyncOptions(true, false);
+
+        TreeSync.Summary[] both = sync(source, target, mirror, mirror);
+
+        assertEquals(List.of("k/", "k/m", "kept", "x"), list(target));
+        assertEquals("k/m", Files.readString(target.resolve("k/m")));
+        assertEquals("x", Files.readString(target.resolve("x")));
+        assertSummary(3, 1 + 3 + 4, 3, 0, both); // Deleted: k, gone/deep and x/y
+    }
+
+    @Test
+    void refusesDeletionsTheReceiverDidNotAllow(@TempDir Path work) throws Exception {
+        Path source = tree(work, "source", "a");
+        Path target = tree(work, "target", "a", "extra");
+
+        IOException refused = assertThrows(IOException.class,
+                () -> sync(source, target, new SyncOptions(true, false), new SyncOptions(false, false)));
+        assertTrue(refused.getMessage().contains("Refusing to delete 'extra'"), refused.getMessage());
+        assertTrue(Files.exists(target.resolve("extra")));
+    }
+
+    @Test
+    void refusesReplacementsTheReceiverDidNotAllow(@TempDir Path work) throws Exception {
+        SyncOptions plain = new SyncOptions(false, false);
+
+        Path folderSource = tree(work, "folderSource", "x");
+        Path folderTarget = tree(work, "folderTarget", "x/y");
+        IOException refused = assertThrows(IOException.class, () -> sync(folderSource, folderTarget, plain, plain));
+        assertTrue(refused.getMessage().contains("'x' is a folder here"), refused.getMessage());
+        assertEquals(List.of("x/", "x/y"), list(folderTarget));
+
+        Path fileSource = tree(work, "fileSource", "k/m");
+        Path fileTarget = tree(work, "fileTarget", "k");
+        refused = assertThrows(IOException.class, () -> sync(fileSource, fileTarget, plain, plain));
+        assertTrue(refused.getMessage().contains("'k' is a file here"), refused.getMessage());
+        assertEquals(List.of("k"), list(fileTarget));
+    }
+
+    @Test
+    void checksumsSendOnlyFilesWhoseContentDiffers(@TempDir Path work) throws Exception {
+        Path source = tree(work, "source", "same", "diff", "size");
+        Path target = tree(work, "target", "same", "extra");
+        Files.writeString(target.resolve("diff"), "ffff");   // Same size, different content: asked for in pass two
+        Files.writeString(target.resolve("size"), "longer"); // Different size: sent right away
+        Files.setLastModifiedTime(target.resolve("same"), FileTime.fromMillis(1000));
+        SyncOptions checksums = new SyncOptions(false, true);
+
+        TreeSync.Summary[] both = sync(source, target, checksums, checksums);
+
+        assertEquals("diff", Files.readString(target.resolve("diff")));
+        assertEquals("size", Files.readString(target.resolve("size")));
+        assertEquals(List.of("diff", "extra", "same", "size"), list(target)); // Not mirroring: extra stays
+        assertEquals(Files.getLastModifiedTime(source.resolve("same")).toMillis(), // Manifests carry milliseconds
+                Files.getLastModifiedTime(target.resolve("same")).toMillis());
+        assertSummary(2, 8, 0, 1, both);
+
+        // Every timestamp now matches, so a sync without checksums finds nothing to do
+        SyncOptions plain = new SyncOptions(false, false);
+        assertSummary(0, 0, 0, 3, sync(source, target, plain, plain));
+    }
+
+    @Test
+    void refusesPathsOutsideTheTarget(@TempDir Path work) throws Exception {
+        Path target = tree(work, "target", "inside");
+        Files.writeString(work.resolve("victim"), "victim");
+        SyncOptions allowed = new SyncOptions(true, false);
+
+        IOException refused = assertThrows(IOException.class,
+                () -> sync(target, allowed, hostile(Frame.SYNC_DELETE, "../victim")));
+        assertTrue(refused.getMessage().contains("outside the target directory"), refused.getMessage());
+        assertTrue(Files.exists(work.resolve("victim")));
+
+        refused = assertThrows(IOException.class,
+                () -> sync(target, allowed, hostile(Frame.SYNC_FILE, "inside/../../evil")));
+        assertTrue(refused.getMessage().contains("outside the target directory"), refused.getMessage());
+        assertFalse(Files.exists(work.resolve("evil")));
+        assertEquals(List.of("inside"), list(target));
+    }
+
+    /** A sender that reads the manifest and answers with one operation on {@code path} */
+    private static Sender hostile(byte op, String path) {
+        return (frames, out, caps) -> {
+            while (frames.next() != Frame.SYNC_ENTRIES_END) {
+                // Whatever the receiver has, the answer is the same
+            }
+            byte[] name = path.getBytes(StandardCharsets.UTF_8);
+            if (op == Frame.SYNC_FILE) {
+                out.writeHeader(Frame.SYNC_FILE, 16 + name.length);
+                out.writeLong(0);
+                out.writeLong(0);
+                out.write(name);
+                ChunkCodec.writeEnd(out);
+            } else {
+                out.writeHeader(op, name.length);
+                out.write(name);
+            }
+            out.writeHeader(Frame.SYNC_DONE, 0);
+            out.flush();
+            frames.next(); // The receiver hangs up instead of answering
+            throw new IOException("Receiver accepted '" + path + "'");
+        };
+    }
+}
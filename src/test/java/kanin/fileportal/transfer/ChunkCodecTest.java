@@ -0,0 +1,95 @@
+package kanin.fileportal.transfer;
+
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.Frame;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * All-zero chunks must travel as HOLE frames and still decode to a byte-identical file,
+ * including files whose last chunk is a hole and therefore never touches the disk.
+ */
+class ChunkCodecTest {
+
+    private static final int CHUNK = ChunkCodec.CHUNK_SIZE;
+
+    private final Capabilities caps;
+
+    ChunkCodecTest() throws IOException {
+        caps = Capabilities.negotiate(Capabilities.local(CHUNK), Capabilities.local(CHUNK));
+    }
+
+    /** Sends {@code data}, checks it decodes unchanged and returns the frame types that went out */
+    private List<Byte> roundTrip(Path work, byte[] data) throws IOException {
+        File source = Files.write(work.resolve("source.bin"), data).toFile();
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        FrameWriter out = new FrameWriter(sent);
+        List<Boolean> sentHoles = new ArrayList<>();
+        ChunkCodec.send(source, out, caps, 0, (done, hole) -> sentHoles.add(hole));
+
+        List<Byte> types = new ArrayList<>();
+        FrameReader frames = new FrameReader(new ByteArrayInputStream(sent.toByteArray()));
+        byte type;
+        while ((type = frames.next()) != Frame.END) types.add(type);
+
+        Path target = work.resolve("target.bin");
+        List<Boolean> receivedHoles = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long length = ChunkCodec.receive(new FrameReader(new ByteArrayInputStream(sent.toByteArray())),
+                    channel, caps, 0, (done, hole) -> receivedHoles.add(hole));
+            assertEquals(data.length, length);
+        }
+        assertArrayEquals(data, Files.readAllBytes(target));
+        assertEquals(sentHoles, receivedHoles);
+        for (int i = 0; i < types.size(); i++) assertEquals(types.get(i) == Frame.HOLE, sentHoles.get(i));
+        return types;
+    }
+
+    @Test
+    void zeroChunksTravelAsHoles(@TempDir Path work) throws IOException {
+        byte[] data = new byte[4 * CHUNK + 100];
+        new Random(3).nextBytes(data);
+        Arrays.fill(data, CHUNK, 3 * CHUNK, (byte) 0);
+
+        assertEquals(List.of(Frame.DATA, Frame.HOLE, Frame.HOLE, Frame.DATA, Frame.DATA), roundTrip(work, data));
+    }
+
+    @Test
+    void fileEndingInAHoleKeepsItsLength(@TempDir Path work) throws IOException {
+        byte[] data = new byte[2 * CHUNK + 777];
+        new Random(5).nextBytes(data);
+        Arrays.fill(data, 2 * CHUNK, data.length, (byte) 0); // Short final chunk, all zero
+
+        assertEquals(List.of(Frame.DATA, Frame.DATA, Frame.HOLE), roundTrip(work, data));
+    }
+
+    @Test
+    void allZeroFileIsOnlyHoles(@TempDir Path work) throws IOException {
+        assertEquals(List.of(Frame.HOLE, Frame.HOLE, Frame.HOLE), roundTrip(work, new byte[3 * CHUNK]));
+    }
+
+    @Test
+    void chunksWithASingleNonZeroByteAreEncrypted(@TempDir Path work) throws IOException {
+        byte[] data = new byte[2 * CHUNK];
+        data[2 * CHUNK - 1] = 1;
+
+        assertEquals(List.of(Frame.HOLE, Frame.DATA), roundTrip(work, data));
+    }
+}
@@ -0,0 +1,110 @@
+package kanin.fileportal.transfer;
+
+import kanin.fileportal.protocol.Capabilities;
+import kanin.fileportal.protocol.Frame;
+import kanin.fileportal.protocol.FrameReader;
+import kanin.fileportal.protocol.FrameWriter;
+import kanin.fileportal.protocol.Offer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A resumed receive must restart at the last complete chunk of the partial file and
+ * still produce exactly the sender's file; chunk frames outside the negotiated
+ * capabilities must be refused before anything reaches the disk.
+ */
+class TransferEngineTest {
+
+    private static final int CHUNK = ChunkCodec.CHUNK_SIZE;
+
+    private final Capabilities caps;
+
+    TransferEngineTest() throws IOException {
+        caps = Capabilities.negotiate(Capabilities.local(CHUNK), Capabilities.local(CHUNK));
+    }
+
+    /** Receives {@code source} from the chunk frames a sender would produce from {@code sendOffset} */
+    private long receive(File source, File inbox, long sendOffset, File[] saved) throws IOException {
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        FrameWriter sender = new FrameWriter(sent);
+        ChunkCodec.send(source, sender, caps, sendOffset, (done, hole) -> {});
+
+        ByteArrayOutputStream replies = new ByteArrayOutputStream();
+        saved[0] = TransferEngine.receiveFile(new FrameReader(new ByteArrayInputStream(sent.toByteArray())),
+                new FrameWriter(replies), caps, inbox, Offer.file(source), (done, hole) -> {});
+
+        FrameReader answers = new FrameReader(new ByteArrayInputStream(replies.toByteArray()));
+        answers.expect(Frame.READY);
+        long offset = answers.payload().getLong();
+        answers.expect(Frame.ACK);
+        return offset;
+    }
+
+    @Test
+    void resumesFromTheLastCompleteChunk(@TempDir Path work) throws IOException {
+        byte[] data = new byte[5 * CHUNK + 1234];
+        new Random(7).nextBytes(data);
+        Arrays.fill(data, CHUNK, 2 * CHUNK, (byte) 0); // Arrives as a HOLE right where the stale bytes are
+        File source = Files.write(work.resolve("data.bin"), data).toFile();
+        File inbox = Files.createDirectory(work.resolve("inbox")).toFile();
+
+        // An interrupted attempt got 100 000 bytes; everything past the first full chunk is suspect
+        byte[] head = Arrays.copyOf(data, 100_000);
+        Arrays.fill(head, CHUNK, head.length, (byte) 0x5A);
+        Files.write(inbox.toPath().resolve(
+                "data.bin." + source.length() + "." + source.lastModified() + TransferEngine.PARTIAL_SUFFIX), head);
+
+        File[] saved = new File[1];
+        assertEquals(CHUNK, receive(source, inbox, CHUNK, saved));
+        assertArrayEquals(data, Files.readAllBytes(saved[0].toPath()));
+        assertArrayEquals(new String[]{"data.bin"}, inbox.list()); // Partial file renamed into place
+    }
+
+    @Test
+    void startsOverWhenThePartialFileHoldsNoCompleteChunk(@TempDir Path work) throws IOException {
+        byte[] data = new byte[3 * CHUNK];
+        new Random(11).nextBytes(data);
+        File source = Files.write(work.resolve("data.bin"), data).toFile();
+        File inbox = Files.createDirectory(work.resolve("inbox")).toFile();
+        Files.write(inbox.toPath().resolve(
+                "data.bin." + source.length() + "." + source.lastModified() + TransferEngine.PARTIAL_SUFFIX),
+                new byte[CHUNK - 1]);
+
+        File[] saved = new File[1];
+        assertEquals(0, receive(source, inbox, 0, saved));
+        assertArrayEquals(data, Files.readAllBytes(saved[0].toPath()));
+    }
+
+    @Test
+    void rejectsHolesWhenZeroRunsWereNotNegotiated(@TempDir Path work) throws IOException {
+        Capabilities plain = Capabilities.negotiate(Capabilities.local(CHUNK),
+                new Capabilities(Frame.MIN_VERSION, Frame.VERSION, Capabilities.CIPHER_AES128_ECB, 0, CHUNK, 0));
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        FrameWriter out = new FrameWriter(sent);
+        out.writeHeader(Frame.HOLE, 4);
+        out.writeInt(CHUNK);
+        ChunkCodec.writeEnd(out);
+
+        try (FileChannel channel = FileChannel.open(work.resolve("out.bin"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FrameReader frames = new FrameReader(new ByteArrayInputStream(sent.toByteArray()));
+            assertThrows(ProtocolException.class,
+                    () -> ChunkCodec.receive(frames, channel, plain, 0, (done, hole) -> {}));
+            assertEquals(0, channel.size());
+        }
+    }
+}